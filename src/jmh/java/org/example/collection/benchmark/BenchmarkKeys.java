@@ -0,0 +1,109 @@
+package org.example.collection.benchmark;
+
+import java.util.Random;
+
+final class BenchmarkKeys {
+
+    // long enough that equals() and compareTo() cost more than the probe around them
+    private static final String LONG_PREFIX = "k".repeat(256);
+
+    private BenchmarkKeys() {
+    }
+
+    /**
+     * Builds {@code count} distinct keys starting at id {@code offset}, shuffled
+     * with a fixed seed so every run probes the table in the same order.
+     */
+    static Object[] create(String keyType, int count, int offset) {
+        Object[] keys = new Object[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(keyType, offset + i);
+        }
+        Random random = new Random(31);
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Object tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+        return keys;
+    }
+
+    private static Object key(String keyType, int id) {
+        switch (keyType) {
+            case "Integer":
+                return id;
+            case "String":
+                return "key-" + id;
+            case "Colliding":
+                return new CollidingKey(id);
+            case "LongString":
+                return LONG_PREFIX + id;
+            case "LongStringTree":
+                return new LongStringKey(id);
+            default:
+                throw new IllegalArgumentException("Unknown key type: " + keyType);
+        }
+    }
+
+    /**
+     * Key whose hash is shared by 64 consecutive ids, so every populated bin
+     * crosses TREEIFY_THRESHOLD and is turned into a tree.
+     */
+    static final class CollidingKey implements Comparable<CollidingKey> {
+        private final int id;
+
+        CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id >>> 6;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+        }
+
+        @Override
+        public int compareTo(CollidingKey other) {
+            return Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * Long string key where 16 consecutive ids share a bin but not a hash, as
+     * with composite keys whose hash codes differ only in high bits. Every bin
+     * becomes a tree, small enough not to look like hash flooding, whose keys
+     * are expensive to compare.
+     */
+    static final class LongStringKey implements Comparable<LongStringKey> {
+        private final String value;
+        private final int hash;
+
+        LongStringKey(int id) {
+            this.value = LONG_PREFIX + id;
+            // h ^ h >>> 16, the spreading of CustomHashMap and HashMap, undoes
+            // itself, so the spread hash is exactly id >>> 4 with id & 15 on top
+            int spread = (id & 15) << 28 | id >>> 4;
+            this.hash = spread ^ spread >>> 16;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LongStringKey && ((LongStringKey) o).value.equals(value);
+        }
+
+        @Override
+        public int compareTo(LongStringKey other) {
+            return value.compareTo(other.value);
+        }
+    }
+}
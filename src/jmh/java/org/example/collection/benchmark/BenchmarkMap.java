@@ -0,0 +1,63 @@
+package org.example.collection.benchmark;
+
+import org.example.collection.ConcurrentCustomHashMap;
+import org.example.collection.CustomHashMap;
+import org.example.collection.FlatCustomHashMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Common face for the maps under test, so every benchmark runs the same
+ * code against each implementation.
+ */
+interface BenchmarkMap {
+
+    Object put(Object key, Object value);
+
+    Object get(Object key);
+
+    Object remove(Object key);
+
+    int size();
+
+    static BenchmarkMap create(String implementation) {
+        switch (implementation) {
+            case "CustomHashMap":
+                return jdk(new CustomHashMap<>());
+            case "FlatCustomHashMap":
+                return jdk(new FlatCustomHashMap<>());
+            case "ConcurrentCustomHashMap":
+                return concurrentCustom(new ConcurrentCustomHashMap<>());
+            case "SynchronizedCustomHashMap":
+                return jdk(Collections.synchronizedMap(new CustomHashMap<>()));
+            case "HashMap":
+                return jdk(new HashMap<>());
+            case "ConcurrentHashMap":
+                return jdk(new ConcurrentHashMap<>());
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static BenchmarkMap concurrentCustom(ConcurrentCustomHashMap map) {
+        return new BenchmarkMap() {
+            public Object put(Object key, Object value) { return map.put((Comparable) key, value); }
+            public Object get(Object key) { return map.get((Comparable) key); }
+            public Object remove(Object key) { return map.remove((Comparable) key); }
+            public int size() { return map.size(); }
+        };
+    }
+
+    private static BenchmarkMap jdk(Map<Object, Object> map) {
+        return new BenchmarkMap() {
+            public Object put(Object key, Object value) { return map.put(key, value); }
+            public Object get(Object key) { return map.get(key); }
+            public Object remove(Object key) { return map.remove(key); }
+            public int size() { return map.size(); }
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.collection.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read/write mixes from several threads against one shared, pre-filled map,
+ * with a synchronized wrapper and {@code ConcurrentHashMap} as the baselines
+ * under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentMapBenchmark {
+
+    @Param({"ConcurrentCustomHashMap", "SynchronizedCustomHashMap", "ConcurrentHashMap"})
+    public String implementation;
+
+    @Param({"Integer", "String", "Colliding"})
+    public String keyType;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private BenchmarkMap map;
+    private Object[] keys;
+
+    @Setup
+    public void setUp() {
+        keys = BenchmarkKeys.create(keyType, size, 0);
+        map = BenchmarkMap.create(implementation);
+        for (Object key : keys) {
+            map.put(key, key);
+        }
+    }
+
+    /** Per-thread position in the shared key array, so threads do not walk it in lockstep. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        @Setup
+        public void setUp(ConcurrentMapBenchmark benchmark) {
+            next = ThreadLocalRandom.current().nextInt(benchmark.size);
+        }
+
+        Object key(ConcurrentMapBenchmark benchmark) {
+            int i = next;
+            next = i + 1 == benchmark.size ? 0 : i + 1;
+            return benchmark.keys[i];
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getOnly(Cursor cursor) {
+        return map.get(cursor.key(this));
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(3)
+    public Object readMostlyGet(Cursor cursor) {
+        return map.get(cursor.key(this));
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public Object readMostlyPut(Cursor cursor) {
+        Object key = cursor.key(this);
+        return map.put(key, key);
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(2)
+    public Object balancedGet(Cursor cursor) {
+        return map.get(cursor.key(this));
+    }
+
+    // remove and re-insert, so writers also contend on structural changes
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(2)
+    public Object balancedRemoveAndPut(Cursor cursor) {
+        Object key = cursor.key(this);
+        Object value = map.remove(key);
+        map.put(key, key);
+        return value;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.collection.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills an empty map from the default capacity, so the score is dominated by
+ * resizes and, for colliding keys, by treeifyBin.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapFillBenchmark {
+
+    @Param({"CustomHashMap", "FlatCustomHashMap", "HashMap", "ConcurrentCustomHashMap", "ConcurrentHashMap"})
+    public String implementation;
+
+    @Param({"Integer", "String", "Colliding"})
+    public String keyType;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Object[] keys;
+
+    @Setup
+    public void setUp() {
+        keys = BenchmarkKeys.create(keyType, size, 0);
+    }
+
+    @Benchmark
+    public Object fillWithResize() {
+        BenchmarkMap map = BenchmarkMap.create(implementation);
+        for (Object key : keys) {
+            map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Object fillAndDrain() {
+        BenchmarkMap map = BenchmarkMap.create(implementation);
+        for (Object key : keys) {
+            map.put(key, key);
+        }
+        for (Object key : keys) {
+            map.remove(key);
+        }
+        return map;
+    }
+}
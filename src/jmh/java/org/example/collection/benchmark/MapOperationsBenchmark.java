@@ -0,0 +1,81 @@
+package org.example.collection.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-key operations against a pre-filled map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapOperationsBenchmark {
+
+    @Param({"CustomHashMap", "FlatCustomHashMap", "HashMap", "ConcurrentCustomHashMap", "ConcurrentHashMap"})
+    public String implementation;
+
+    @Param({"Integer", "String", "Colliding", "LongString", "LongStringTree"})
+    public String keyType;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private BenchmarkMap map;
+    private Object[] keys;
+    private Object[] missingKeys;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        keys = BenchmarkKeys.create(keyType, size, 0);
+        missingKeys = BenchmarkKeys.create(keyType, size, size);
+        map = BenchmarkMap.create(implementation);
+        for (Object key : keys) {
+            map.put(key, key);
+        }
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = i + 1 == size ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Object getHit() {
+        return map.get(keys[next()]);
+    }
+
+    @Benchmark
+    public Object getMiss() {
+        return map.get(missingKeys[next()]);
+    }
+
+    @Benchmark
+    public Object putExisting() {
+        Object key = keys[next()];
+        return map.put(key, key);
+    }
+
+    @Benchmark
+    public Object removeAndPut() {
+        Object key = keys[next()];
+        Object value = map.remove(key);
+        map.put(key, value);
+        return value;
+    }
+}
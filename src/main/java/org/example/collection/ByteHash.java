@@ -0,0 +1,34 @@
+package org.example.collection;
+
+import java.nio.ByteBuffer;
+
+final class ByteHash {
+
+    private static final long K1 = 0x9E3779B97F4A7C15L;
+    private static final long K2 = 0xC2B2AE3D27D4EB4FL;
+
+    private ByteHash() {
+    }
+
+    // hash of a serialized key; it depends only on the bytes, never on the JVM,
+    // so equal serialized keys always collide and stored hashes stay valid
+    static int hash(ByteBuffer buffer, int offset, int length) {
+        long h = K1 ^ length;
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            h = Long.rotateLeft(h ^ buffer.getLong(offset + i) * K2, 29) * K1;
+        }
+        if (i < length) {
+            long tail = 0;
+            for (; i < length; i++) {
+                tail = tail << 8 | (buffer.get(offset + i) & 0xFF);
+            }
+            h = Long.rotateLeft(h ^ tail * K2, 29) * K1;
+        }
+        // murmur3 finalizer, so every input bit reaches the low bits used as the bin index
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.collection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts keys or values to bytes for the maps that keep their data outside
+ * the Java heap. Two objects that are {@code equals} must serialize to the
+ * same bytes, because stored keys are compared byte by byte.
+ */
+public interface ByteSerializer<T> {
+
+    /** Number of bytes {@link #write} will produce for {@code value}. */
+    int size(T value);
+
+    /** Writes exactly {@link #size} bytes at the buffer's position. */
+    void write(T value, ByteBuffer buffer);
+
+    /** Reads a value from a buffer whose remaining bytes are exactly one serialized value. */
+    T read(ByteBuffer buffer);
+
+    ByteSerializer<String> STRING = new ByteSerializer<>() {
+        @Override
+        public int size(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    length++;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    // getBytes() replaces an unpaired surrogate with a single '?'
+                    length++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+
+        @Override
+        public void write(String value, ByteBuffer buffer) {
+            buffer.put(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    ByteSerializer<Integer> INTEGER = new ByteSerializer<>() {
+        @Override
+        public int size(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    ByteSerializer<Long> LONG = new ByteSerializer<>() {
+        @Override
+        public int size(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    ByteSerializer<byte[]> BYTES = new ByteSerializer<>() {
+        @Override
+        public int size(byte[] value) {
+            return value.length;
+        }
+
+        @Override
+        public void write(byte[] value, ByteBuffer buffer) {
+            buffer.put(value);
+        }
+
+        @Override
+        public byte[] read(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+    };
+}
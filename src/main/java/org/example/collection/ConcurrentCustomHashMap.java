@@ -0,0 +1,1087 @@
+package org.example.collection;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe variant of {@link CustomHashMap} with the same bin layout: plain
+ * chains that turn into red-black trees past {@code TREEIFY_THRESHOLD}.
+ * Empty bins are filled with a CAS, collisions lock only the head node of the
+ * bin, the table is grown cooperatively by every writer that runs into a
+ * resize, and {@code get} never locks. Null keys and values are rejected,
+ * since {@code null} is what {@code get} returns for a missing key.
+ */
+public class ConcurrentCustomHashMap<K extends Comparable<K>, V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int TREEIFY_THRESHOLD = 8;
+    private static final int UNTREEIFY_THRESHOLD = 6;
+    private static final int MIN_TREEIFY_CAPACITY = 64;
+    private static final int MIN_TRANSFER_STRIDE = 16;
+
+    private static final int RESIZE_STAMP_BITS = 16;
+    private static final int RESIZE_STAMP_SHIFT = 32 - RESIZE_STAMP_BITS;
+    private static final int MAX_RESIZERS = (1 << (32 - RESIZE_STAMP_BITS)) - 1;
+
+    static final int MOVED = -1;
+    static final int TREEBIN = -2;
+    static final int HASH_BITS = 0x7fffffff;
+
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    private static final VarHandle TAB = MethodHandles.arrayElementVarHandle(Node[].class);
+    private static final VarHandle SIZE_CTL;
+    private static final VarHandle TRANSFER_INDEX;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SIZE_CTL = lookup.findVarHandle(ConcurrentCustomHashMap.class, "sizeCtl", int.class);
+            TRANSFER_INDEX = lookup.findVarHandle(ConcurrentCustomHashMap.class, "transferIndex", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile Node<K, V>[] table;
+    private volatile Node<K, V>[] nextTable;
+    // next resize threshold, or a negative resize stamp plus (helpers + 1) while a resize runs
+    private volatile int sizeCtl;
+    private volatile int transferIndex;
+    private final LongAdder count = new LongAdder();
+
+    static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V value;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        Node<K, V> find(int h, K k) {
+            Node<K, V> e = this;
+            do {
+                if (e.hash == h && (e.key == k || k.equals(e.key))) {
+                    return e;
+                }
+            } while ((e = e.next) != null);
+            return null;
+        }
+
+        public final K getKey() { return key; }
+        public final V getValue() { return value; }
+        public final String toString() { return key + "=" + value; }
+    }
+
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final Node<K, V>[] nextTable;
+
+        ForwardingNode(Node<K, V>[] nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+
+        @Override
+        Node<K, V> find(int h, K k) {
+            outer:
+            for (Node<K, V>[] tab = nextTable; ; ) {
+                Node<K, V> e = tabAt(tab, (tab.length - 1) & h);
+                if (e == null) {
+                    return null;
+                }
+                while (true) {
+                    if (e.hash == h && (e.key == k || k.equals(e.key))) {
+                        return e;
+                    }
+                    if (e.hash < 0) {
+                        if (e instanceof ForwardingNode) {
+                            tab = ((ForwardingNode<K, V>) e).nextTable;
+                            continue outer;
+                        }
+                        return e.find(h, k);
+                    }
+                    if ((e = e.next) == null) {
+                        return null;
+                    }
+                }
+            }
+        }
+    }
+
+    static final class TreeNode<K extends Comparable<K>, V> extends Node<K, V> {
+        TreeNode<K, V> left;
+        TreeNode<K, V> right;
+        TreeNode<K, V> parent;
+        TreeNode<K, V> prev;
+        boolean red;
+
+        TreeNode(int hash, K key, V value, Node<K, V> next, TreeNode<K, V> parent) {
+            super(hash, key, value, next);
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Head of a tree bin. Writers hold the bin lock and bump {@code version}
+     * around every structural change of the tree. Readers search the tree and
+     * trust a miss only if no writer ran meanwhile; otherwise they fall back
+     * to the {@code first}/{@code next} chain, which always stays consistent.
+     */
+    static final class TreeBin<K extends Comparable<K>, V> extends Node<K, V> {
+        // red-black depth is at most 2 * log2(n + 1), far below this for any bin
+        private static final int MAX_TREE_STEPS = 64;
+
+        volatile TreeNode<K, V> root;
+        volatile TreeNode<K, V> first;
+        volatile int version;
+
+        TreeBin(TreeNode<K, V> chain) {
+            super(TREEBIN, null, null, null);
+            this.first = chain;
+            TreeNode<K, V> r = null;
+            for (TreeNode<K, V> x = chain, next; x != null; x = next) {
+                next = (TreeNode<K, V>) x.next;
+                x.left = x.right = null;
+                if (r == null) {
+                    x.parent = null;
+                    x.red = false;
+                    r = x;
+                    continue;
+                }
+                TreeNode<K, V> p = r;
+                while (true) {
+                    int dir = treeOrder(x.hash, x.key, p);
+                    TreeNode<K, V> xp = p;
+                    if ((p = dir <= 0 ? p.left : p.right) == null) {
+                        x.parent = xp;
+                        if (dir <= 0) {
+                            xp.left = x;
+                        } else {
+                            xp.right = x;
+                        }
+                        r = balanceInsertion(r, x);
+                        break;
+                    }
+                }
+            }
+            this.root = r;
+        }
+
+        // 0 means compareTo() cannot tell the keys apart, so both subtrees may hold the key
+        private static <K extends Comparable<K>> int searchOrder(int h, K k, TreeNode<K, ?> p) {
+            if (h != p.hash) {
+                return h < p.hash ? -1 : 1;
+            }
+            return k.compareTo(p.key);
+        }
+
+        // total order of the nodes, with the same tie break as CustomHashMap: class name, then identity
+        private static <K extends Comparable<K>> int treeOrder(int h, K k, TreeNode<K, ?> p) {
+            int cmp = searchOrder(h, k, p);
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = k.getClass().getName().compareTo(p.key.getClass().getName());
+            if (cmp != 0) {
+                return cmp;
+            }
+            return System.identityHashCode(k) <= System.identityHashCode(p.key) ? -1 : 1;
+        }
+
+        private static <K extends Comparable<K>, V> TreeNode<K, V> findTreeNode(TreeNode<K, V> p, int h, K k) {
+            while (p != null) {
+                if (p.hash == h && (p.key == k || k.equals(p.key))) {
+                    return p;
+                }
+                int cmp = searchOrder(h, k, p);
+                if (cmp == 0) {
+                    TreeNode<K, V> found = findTreeNode(p.right, h, k);
+                    if (found != null) {
+                        return found;
+                    }
+                    cmp = -1;
+                }
+                p = cmp < 0 ? p.left : p.right;
+            }
+            return null;
+        }
+
+        @Override
+        Node<K, V> find(int h, K k) {
+            int v = version;
+            if ((v & 1) == 0) {
+                TreeNode<K, V> p = root;
+                int steps = 0;
+                while (p != null && steps++ < MAX_TREE_STEPS) {
+                    if (p.hash == h && (p.key == k || k.equals(p.key))) {
+                        return p;
+                    }
+                    int cmp = searchOrder(h, k, p);
+                    if (cmp == 0) {
+                        // only identity orders the rest, so the chain decides
+                        break;
+                    }
+                    p = cmp < 0 ? p.left : p.right;
+                }
+                VarHandle.acquireFence();
+                if (p == null && version == v) {
+                    return null;
+                }
+            }
+            for (Node<K, V> e = first; e != null; e = e.next) {
+                if (e.hash == h && (e.key == k || k.equals(e.key))) {
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        private void beginWrite() {
+            version = version + 1;
+            VarHandle.storeStoreFence();
+        }
+
+        private void endWrite() {
+            version = version + 1;
+        }
+
+        // caller holds the bin lock; returns the existing node or null after inserting
+        TreeNode<K, V> putTreeVal(int h, K k, V v) {
+            TreeNode<K, V> p = root;
+            TreeNode<K, V> xp = null;
+            int dir = 0;
+            boolean searched = false;
+            while (p != null) {
+                if (p.hash == h && (p.key == k || k.equals(p.key))) {
+                    return p;
+                }
+                dir = searchOrder(h, k, p);
+                if (dir == 0) {
+                    if (!searched) {
+                        // every node tied with k sits below the first one met
+                        searched = true;
+                        TreeNode<K, V> found = findTreeNode(p.left, h, k);
+                        if (found == null) {
+                            found = findTreeNode(p.right, h, k);
+                        }
+                        if (found != null) {
+                            return found;
+                        }
+                    }
+                    dir = treeOrder(h, k, p);
+                }
+                xp = p;
+                p = dir < 0 ? p.left : p.right;
+            }
+
+            TreeNode<K, V> f = first;
+            TreeNode<K, V> x = new TreeNode<>(h, k, v, f, xp);
+            if (f != null) {
+                f.prev = x;
+            }
+            first = x;
+
+            beginWrite();
+            try {
+                if (xp == null) {
+                    x.red = false;
+                    root = x;
+                } else {
+                    if (dir < 0) {
+                        xp.left = x;
+                    } else {
+                        xp.right = x;
+                    }
+                    root = balanceInsertion(root, x);
+                }
+            } finally {
+                endWrite();
+            }
+            return null;
+        }
+
+        // caller holds the bin lock; returns true when the bin is small enough to untreeify
+        boolean removeTreeNode(TreeNode<K, V> p) {
+            TreeNode<K, V> next = (TreeNode<K, V>) p.next;
+            TreeNode<K, V> pred = p.prev;
+            if (pred == null) {
+                first = next;
+            } else {
+                pred.next = next;
+            }
+            if (next != null) {
+                next.prev = pred;
+            }
+            if (first == null) {
+                root = null;
+                return true;
+            }
+
+            TreeNode<K, V> r = root;
+            if (r == null || r.right == null || r.left == null || r.left.left == null) {
+                return true;
+            }
+
+            beginWrite();
+            try {
+                root = deleteTreeNode(r, p);
+            } finally {
+                endWrite();
+            }
+            return false;
+        }
+
+        private static <K extends Comparable<K>, V> TreeNode<K, V> deleteTreeNode(TreeNode<K, V> root, TreeNode<K, V> p) {
+            if (p.left != null && p.right != null) {
+                TreeNode<K, V> s = p.right;
+                while (s.left != null) {
+                    s = s.left;
+                }
+                root = swapPositions(root, p, s);
+            }
+
+            TreeNode<K, V> replacement = p.left != null ? p.left : p.right;
+            if (replacement != null) {
+                replacement.parent = p.parent;
+                if (p.parent == null) {
+                    root = replacement;
+                } else if (p == p.parent.left) {
+                    p.parent.left = replacement;
+                } else {
+                    p.parent.right = replacement;
+                }
+                p.left = p.right = p.parent = null;
+                if (!p.red) {
+                    root = balanceDeletion(root, replacement);
+                }
+            } else if (p.parent == null) {
+                return null;
+            } else {
+                if (!p.red) {
+                    root = balanceDeletion(root, p);
+                }
+                TreeNode<K, V> pp = p.parent;
+                if (pp != null) {
+                    if (p == pp.left) {
+                        pp.left = null;
+                    } else if (p == pp.right) {
+                        pp.right = null;
+                    }
+                    p.parent = null;
+                }
+            }
+            if (root != null) {
+                root.red = false;
+            }
+            return root;
+        }
+
+        private static <K extends Comparable<K>, V> TreeNode<K, V> swapPositions(TreeNode<K, V> root, TreeNode<K, V> p, TreeNode<K, V> s) {
+            boolean color = s.red;
+            s.red = p.red;
+            p.red = color;
+
+            TreeNode<K, V> sr = s.right;
+            TreeNode<K, V> pl = p.left;
+            TreeNode<K, V> pp = p.parent;
+
+            if (s == p.right) {
+                p.parent = s;
+                s.right = p;
+            } else {
+                TreeNode<K, V> sp = s.parent;
+                p.parent = sp;
+                if (s == sp.left) {
+                    sp.left = p;
+                } else {
+                    sp.right = p;
+                }
+                s.right = p.right;
+                s.right.parent = s;
+            }
+
+            p.left = null;
+            p.right = sr;
+            if (sr != null) {
+                sr.parent = p;
+            }
+            s.left = pl;
+            pl.parent = s;
+
+            s.parent = pp;
+            if (pp == null) {
+                root = s;
+            } else if (p == pp.left) {
+                pp.left = s;
+            } else {
+                pp.right = s;
+            }
+            return root;
+        }
+
+        private static <K extends Comparable<K>, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> root, TreeNode<K, V> p) {
+            TreeNode<K, V> r = p.right;
+            if (r == null) return root;
+
+            p.right = r.left;
+            if (r.left != null) {
+                r.left.parent = p;
+            }
+            r.parent = p.parent;
+            if (p.parent == null) {
+                root = r;
+                r.red = false;
+            } else if (p.parent.left == p) {
+                p.parent.left = r;
+            } else {
+                p.parent.right = r;
+            }
+            r.left = p;
+            p.parent = r;
+            return root;
+        }
+
+        private static <K extends Comparable<K>, V> TreeNode<K, V> rotateRight(TreeNode<K, V> root, TreeNode<K, V> p) {
+            TreeNode<K, V> l = p.left;
+            if (l == null) return root;
+
+            p.left = l.right;
+            if (l.right != null) {
+                l.right.parent = p;
+            }
+            l.parent = p.parent;
+            if (p.parent == null) {
+                root = l;
+                l.red = false;
+            } else if (p.parent.right == p) {
+                p.parent.right = l;
+            } else {
+                p.parent.left = l;
+            }
+            l.right = p;
+            p.parent = l;
+            return root;
+        }
+
+        private static <K extends Comparable<K>, V> TreeNode<K, V> balanceInsertion(TreeNode<K, V> root, TreeNode<K, V> x) {
+            x.red = true;
+            while (true) {
+                TreeNode<K, V> xp = x.parent;
+                if (xp == null) {
+                    x.red = false;
+                    return x;
+                }
+                TreeNode<K, V> xpp = xp.parent;
+                if (!xp.red || xpp == null) {
+                    return root;
+                }
+
+                if (xp == xpp.left) {
+                    TreeNode<K, V> uncle = xpp.right;
+                    if (uncle != null && uncle.red) {
+                        uncle.red = false;
+                        xp.red = false;
+                        xpp.red = true;
+                        x = xpp;
+                    } else {
+                        if (x == xp.right) {
+                            x = xp;
+                            root = rotateLeft(root, x);
+                            xp = x.parent;
+                            xpp = xp == null ? null : xp.parent;
+                        }
+                        if (xp != null) {
+                            xp.red = false;
+                            if (xpp != null) {
+                                xpp.red = true;
+                                root = rotateRight(root, xpp);
+                            }
+                        }
+                    }
+                } else {
+                    TreeNode<K, V> uncle = xpp.left;
+                    if (uncle != null && uncle.red) {
+                        uncle.red = false;
+                        xp.red = false;
+                        xpp.red = true;
+                        x = xpp;
+                    } else {
+                        if (x == xp.left) {
+                            x = xp;
+                            root = rotateRight(root, x);
+                            xp = x.parent;
+                            xpp = xp == null ? null : xp.parent;
+                        }
+                        if (xp != null) {
+                            xp.red = false;
+                            if (xpp != null) {
+                                xpp.red = true;
+                                root = rotateLeft(root, xpp);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private static <K extends Comparable<K>, V> TreeNode<K, V> balanceDeletion(TreeNode<K, V> root, TreeNode<K, V> x) {
+            while (x != root && x != null && !x.red) {
+                TreeNode<K, V> xp = x.parent;
+                if (xp == null) {
+                    break;
+                }
+
+                if (x == xp.left) {
+                    TreeNode<K, V> sibling = xp.right;
+                    if (sibling != null && sibling.red) {
+                        sibling.red = false;
+                        xp.red = true;
+                        root = rotateLeft(root, xp);
+                        sibling = xp.right;
+                    }
+                    if (sibling == null) {
+                        x = xp;
+                        continue;
+                    }
+                    boolean leftBlack = sibling.left == null || !sibling.left.red;
+                    boolean rightBlack = sibling.right == null || !sibling.right.red;
+                    if (leftBlack && rightBlack) {
+                        sibling.red = true;
+                        x = xp;
+                    } else {
+                        if (rightBlack) {
+                            sibling.left.red = false;
+                            sibling.red = true;
+                            root = rotateRight(root, sibling);
+                            sibling = xp.right;
+                        }
+                        sibling.red = xp.red;
+                        xp.red = false;
+                        if (sibling.right != null) {
+                            sibling.right.red = false;
+                        }
+                        root = rotateLeft(root, xp);
+                        x = root;
+                    }
+                } else {
+                    TreeNode<K, V> sibling = xp.left;
+                    if (sibling != null && sibling.red) {
+                        sibling.red = false;
+                        xp.red = true;
+                        root = rotateRight(root, xp);
+                        sibling = xp.left;
+                    }
+                    if (sibling == null) {
+                        x = xp;
+                        continue;
+                    }
+                    boolean leftBlack = sibling.left == null || !sibling.left.red;
+                    boolean rightBlack = sibling.right == null || !sibling.right.red;
+                    if (leftBlack && rightBlack) {
+                        sibling.red = true;
+                        x = xp;
+                    } else {
+                        if (leftBlack) {
+                            sibling.right.red = false;
+                            sibling.red = true;
+                            root = rotateLeft(root, sibling);
+                            sibling = xp.left;
+                        }
+                        sibling.red = xp.red;
+                        xp.red = false;
+                        if (sibling.left != null) {
+                            sibling.left.red = false;
+                        }
+                        root = rotateRight(root, xp);
+                        x = root;
+                    }
+                }
+            }
+            if (x != null) {
+                x.red = false;
+            }
+            return root;
+        }
+    }
+
+    public ConcurrentCustomHashMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentCustomHashMap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        int capacity = tableSizeFor(initialCapacity);
+        table = new Node[capacity];
+        sizeCtl = capacity - (capacity >>> 2);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        if (capacity <= 1) return 1;
+        if (capacity >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) & HASH_BITS;
+    }
+
+    private static int resizeStamp(int n) {
+        return Integer.numberOfLeadingZeros(n) | (1 << (RESIZE_STAMP_BITS - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> Node<K, V> tabAt(Node<K, V>[] tab, int i) {
+        return (Node<K, V>) TAB.getAcquire(tab, i);
+    }
+
+    private static <K, V> boolean casTabAt(Node<K, V>[] tab, int i, Node<K, V> expected, Node<K, V> value) {
+        return TAB.compareAndSet(tab, i, expected, value);
+    }
+
+    private static <K, V> void setTabAt(Node<K, V>[] tab, int i, Node<K, V> value) {
+        TAB.setRelease(tab, i, value);
+    }
+
+    public V get(K key) {
+        int h = spread(key.hashCode());
+        Node<K, V>[] tab = table;
+        Node<K, V> e = tabAt(tab, (tab.length - 1) & h);
+        if (e == null) {
+            return null;
+        }
+        if (e.hash == h) {
+            if (e.key == key || key.equals(e.key)) {
+                return e.value;
+            }
+        } else if (e.hash < 0) {
+            Node<K, V> p = e.find(h, key);
+            return p == null ? null : p.value;
+        }
+        while ((e = e.next) != null) {
+            if (e.hash == h && (e.key == key || key.equals(e.key))) {
+                return e.value;
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    private V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int hash = spread(key.hashCode());
+        int binCount = 0;
+
+        for (Node<K, V>[] tab = table; ; ) {
+            int n = tab.length;
+            int i = (n - 1) & hash;
+            Node<K, V> f = tabAt(tab, i);
+
+            if (f == null) {
+                if (casTabAt(tab, i, null, new Node<>(hash, key, value, null))) {
+                    break;
+                }
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, f);
+            } else {
+                V oldValue = null;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (f.hash >= 0) {
+                            binCount = 1;
+                            for (Node<K, V> e = f; ; binCount++) {
+                                if (e.hash == hash && (e.key == key || key.equals(e.key))) {
+                                    oldValue = e.value;
+                                    if (!onlyIfAbsent) {
+                                        e.value = value;
+                                    }
+                                    break;
+                                }
+                                Node<K, V> pred = e;
+                                if ((e = e.next) == null) {
+                                    pred.next = new Node<>(hash, key, value, null);
+                                    break;
+                                }
+                            }
+                        } else if (f instanceof TreeBin) {
+                            binCount = 2;
+                            TreeNode<K, V> p = ((TreeBin<K, V>) f).putTreeVal(hash, key, value);
+                            if (p != null) {
+                                oldValue = p.value;
+                                if (!onlyIfAbsent) {
+                                    p.value = value;
+                                }
+                            }
+                        }
+                    }
+                }
+                if (binCount != 0) {
+                    if (binCount >= TREEIFY_THRESHOLD) {
+                        treeifyBin(tab, i);
+                    }
+                    if (oldValue != null) {
+                        return oldValue;
+                    }
+                    break;
+                }
+            }
+        }
+
+        addCount(1L, binCount);
+        return null;
+    }
+
+    public V remove(K key) {
+        int hash = spread(key.hashCode());
+
+        for (Node<K, V>[] tab = table; ; ) {
+            int i = (tab.length - 1) & hash;
+            Node<K, V> f = tabAt(tab, i);
+
+            if (f == null) {
+                return null;
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer(tab, f);
+            } else {
+                V oldValue = null;
+                boolean validated = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (f.hash >= 0) {
+                            validated = true;
+                            for (Node<K, V> e = f, pred = null; e != null; pred = e, e = e.next) {
+                                if (e.hash == hash && (e.key == key || key.equals(e.key))) {
+                                    oldValue = e.value;
+                                    if (pred != null) {
+                                        pred.next = e.next;
+                                    } else {
+                                        setTabAt(tab, i, e.next);
+                                    }
+                                    break;
+                                }
+                            }
+                        } else if (f instanceof TreeBin) {
+                            validated = true;
+                            TreeBin<K, V> t = (TreeBin<K, V>) f;
+                            Node<K, V> p = t.find(hash, key);
+                            if (p != null) {
+                                oldValue = p.value;
+                                if (t.removeTreeNode((TreeNode<K, V>) p)) {
+                                    setTabAt(tab, i, untreeify(t.first));
+                                }
+                            }
+                        }
+                    }
+                }
+                if (validated) {
+                    if (oldValue != null) {
+                        addCount(-1L, -1);
+                    }
+                    return oldValue;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        long n = count.sum();
+        return n < 0 ? 0 : n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n;
+    }
+
+    public boolean isEmpty() {
+        return count.sum() <= 0;
+    }
+
+    int capacity() {
+        return table.length;
+    }
+
+    private void treeifyBin(Node<K, V>[] tab, int index) {
+        if (tab.length < MIN_TREEIFY_CAPACITY) {
+            tryGrow(tab);
+            return;
+        }
+        Node<K, V> b = tabAt(tab, index);
+        if (b == null || b.hash < 0) {
+            return;
+        }
+        synchronized (b) {
+            if (tabAt(tab, index) == b) {
+                TreeNode<K, V> head = null, tail = null;
+                for (Node<K, V> e = b; e != null; e = e.next) {
+                    TreeNode<K, V> p = new TreeNode<>(e.hash, e.key, e.value, null, null);
+                    if ((p.prev = tail) == null) {
+                        head = p;
+                    } else {
+                        tail.next = p;
+                    }
+                    tail = p;
+                }
+                setTabAt(tab, index, new TreeBin<>(head));
+            }
+        }
+    }
+
+    private static <K, V> Node<K, V> untreeify(Node<K, V> b) {
+        Node<K, V> head = null, tail = null;
+        for (Node<K, V> q = b; q != null; q = q.next) {
+            Node<K, V> p = new Node<>(q.hash, q.key, q.value, null);
+            if (tail == null) {
+                head = p;
+            } else {
+                tail.next = p;
+            }
+            tail = p;
+        }
+        return head;
+    }
+
+    private void addCount(long delta, int check) {
+        count.add(delta);
+        if (check < 0) {
+            return;
+        }
+        long s = count.sum();
+        Node<K, V>[] tab;
+        int sc;
+        while (s >= (long) (sc = sizeCtl) && (tab = table).length < MAXIMUM_CAPACITY) {
+            int rs = resizeStamp(tab.length);
+            if (sc < 0) {
+                Node<K, V>[] nt = nextTable;
+                if ((sc >>> RESIZE_STAMP_SHIFT) != rs || sc == (rs << RESIZE_STAMP_SHIFT) + 1
+                        || sc == (rs << RESIZE_STAMP_SHIFT) + MAX_RESIZERS || nt == null || transferIndex <= 0) {
+                    break;
+                }
+                if (SIZE_CTL.compareAndSet(this, sc, sc + 1)) {
+                    transfer(tab, nt);
+                }
+            } else if (SIZE_CTL.compareAndSet(this, sc, (rs << RESIZE_STAMP_SHIFT) + 2)) {
+                transfer(tab, null);
+            }
+            s = count.sum();
+        }
+    }
+
+    private void tryGrow(Node<K, V>[] tab) {
+        int sc = sizeCtl;
+        if (sc >= 0 && tab == table && tab.length < MAXIMUM_CAPACITY) {
+            int rs = resizeStamp(tab.length);
+            if (SIZE_CTL.compareAndSet(this, sc, (rs << RESIZE_STAMP_SHIFT) + 2)) {
+                transfer(tab, null);
+            }
+        }
+    }
+
+    private Node<K, V>[] helpTransfer(Node<K, V>[] tab, Node<K, V> f) {
+        Node<K, V>[] nextTab;
+        if (f instanceof ForwardingNode && (nextTab = ((ForwardingNode<K, V>) f).nextTable) != null) {
+            int rs = resizeStamp(tab.length) << RESIZE_STAMP_SHIFT;
+            int sc;
+            while (nextTab == nextTable && table == tab && (sc = sizeCtl) < 0) {
+                if (sc == rs + MAX_RESIZERS || sc == rs + 1 || transferIndex <= 0) {
+                    break;
+                }
+                if (SIZE_CTL.compareAndSet(this, sc, sc + 1)) {
+                    transfer(tab, nextTab);
+                    break;
+                }
+            }
+            return nextTab;
+        }
+        return table;
+    }
+
+    // every writer that joins claims a stride of bins from transferIndex downwards;
+    // moved bins are replaced by a ForwardingNode so readers and writers follow them
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void transfer(Node<K, V>[] tab, Node<K, V>[] nextTab) {
+        int n = tab.length;
+        int stride = NCPU > 1 ? (n >>> 3) / NCPU : n;
+        if (stride < MIN_TRANSFER_STRIDE) {
+            stride = MIN_TRANSFER_STRIDE;
+        }
+        if (nextTab == null) {
+            nextTab = new Node[n << 1];
+            nextTable = nextTab;
+            transferIndex = n;
+        }
+
+        ForwardingNode<K, V> fwd = new ForwardingNode<>(nextTab);
+        boolean advance = true;
+        boolean finishing = false;
+
+        for (int i = 0, bound = 0; ; ) {
+            while (advance) {
+                int nextIndex;
+                if (--i >= bound || finishing) {
+                    advance = false;
+                } else if ((nextIndex = transferIndex) <= 0) {
+                    i = -1;
+                    advance = false;
+                } else {
+                    int nextBound = nextIndex > stride ? nextIndex - stride : 0;
+                    if (TRANSFER_INDEX.compareAndSet(this, nextIndex, nextBound)) {
+                        bound = nextBound;
+                        i = nextIndex - 1;
+                        advance = false;
+                    }
+                }
+            }
+
+            if (i < 0 || i >= n) {
+                if (finishing) {
+                    nextTable = null;
+                    table = nextTab;
+                    sizeCtl = (n << 1) - (n >>> 1);
+                    return;
+                }
+                int sc = sizeCtl;
+                if (SIZE_CTL.compareAndSet(this, sc, sc - 1)) {
+                    if ((sc - 2) != resizeStamp(n) << RESIZE_STAMP_SHIFT) {
+                        return;
+                    }
+                    // last worker out rescans the old table before publishing the new one
+                    finishing = advance = true;
+                    i = n;
+                }
+                continue;
+            }
+
+            Node<K, V> f = tabAt(tab, i);
+            if (f == null) {
+                advance = casTabAt(tab, i, null, fwd);
+            } else if (f.hash == MOVED) {
+                advance = true;
+            } else {
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (f.hash >= 0) {
+                            transferList(tab, nextTab, f, i, fwd);
+                        } else if (f instanceof TreeBin) {
+                            transferTree(tab, nextTab, (TreeBin<K, V>) f, i, fwd);
+                        }
+                        advance = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private void transferList(Node<K, V>[] tab, Node<K, V>[] nextTab, Node<K, V> f, int i, ForwardingNode<K, V> fwd) {
+        int n = tab.length;
+        // the longest tail whose nodes all go the same way is reused as is,
+        // everything before it is copied so concurrent readers keep a valid chain
+        int runBit = f.hash & n;
+        Node<K, V> lastRun = f;
+        for (Node<K, V> p = f.next; p != null; p = p.next) {
+            int b = p.hash & n;
+            if (b != runBit) {
+                runBit = b;
+                lastRun = p;
+            }
+        }
+
+        Node<K, V> ln = runBit == 0 ? lastRun : null;
+        Node<K, V> hn = runBit == 0 ? null : lastRun;
+        for (Node<K, V> p = f; p != lastRun; p = p.next) {
+            if ((p.hash & n) == 0) {
+                ln = new Node<>(p.hash, p.key, p.value, ln);
+            } else {
+                hn = new Node<>(p.hash, p.key, p.value, hn);
+            }
+        }
+
+        setTabAt(nextTab, i, ln);
+        setTabAt(nextTab, i + n, hn);
+        setTabAt(tab, i, fwd);
+    }
+
+    private void transferTree(Node<K, V>[] tab, Node<K, V>[] nextTab, TreeBin<K, V> t, int i, ForwardingNode<K, V> fwd) {
+        int n = tab.length;
+        TreeNode<K, V> lo = null, loTail = null;
+        TreeNode<K, V> hi = null, hiTail = null;
+        int lc = 0, hc = 0;
+
+        for (Node<K, V> e = t.first; e != null; e = e.next) {
+            TreeNode<K, V> p = new TreeNode<>(e.hash, e.key, e.value, null, null);
+            if ((e.hash & n) == 0) {
+                if ((p.prev = loTail) == null) {
+                    lo = p;
+                } else {
+                    loTail.next = p;
+                }
+                loTail = p;
+                lc++;
+            } else {
+                if ((p.prev = hiTail) == null) {
+                    hi = p;
+                } else {
+                    hiTail.next = p;
+                }
+                hiTail = p;
+                hc++;
+            }
+        }
+
+        Node<K, V> ln = lc <= UNTREEIFY_THRESHOLD ? untreeify(lo) : new TreeBin<>(lo);
+        Node<K, V> hn = hc <= UNTREEIFY_THRESHOLD ? untreeify(hi) : new TreeBin<>(hi);
+        setTabAt(nextTab, i, ln);
+        setTabAt(nextTab, i + n, hn);
+        setTabAt(tab, i, fwd);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        Node<K, V>[] tab = table;
+
+        for (int i = 0; i < tab.length; i++) {
+            Node<K, V> head = tabAt(tab, i);
+            if (head instanceof ForwardingNode) {
+                // a resize is running; read the bin from where it went
+                Node<K, V>[] next = ((ForwardingNode<K, V>) head).nextTable;
+                first = appendBin(sb, tabAt(next, i), first);
+                first = appendBin(sb, tabAt(next, i + tab.length), first);
+            } else {
+                first = appendBin(sb, head, first);
+            }
+        }
+
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private boolean appendBin(StringBuilder sb, Node<K, V> head, boolean first) {
+        Node<K, V> current = head instanceof TreeBin ? ((TreeBin<K, V>) head).first : head;
+        while (current != null && !(current instanceof ForwardingNode)) {
+            if (!first) sb.append(", ");
+            sb.append(current.key).append("=").append(current.value);
+            first = false;
+            current = current.next;
+        }
+        return first;
+    }
+}
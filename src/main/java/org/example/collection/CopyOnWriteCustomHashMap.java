@@ -0,0 +1,190 @@
+package org.example.collection;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Concurrent map for data that is read far more often than it changes, such
+ * as configuration or routing tables. The current contents are a
+ * {@link PersistentCustomHashMap} published through an
+ * {@link AtomicReference}: a read is one volatile load plus a trie lookup
+ * and never blocks, and {@link #snapshot()} hands out the current version
+ * for free.
+ *
+ * <p>A write builds the next version, sharing everything but the path to
+ * its key, and installs it with a compare-and-set, retrying if another
+ * writer got there first. Writers therefore never block readers, but
+ * concurrent writers redo their work on contention, so this suits a few
+ * updates a second rather than write-heavy loads.
+ *
+ * <p>Views and iterators read the version that was current when they were
+ * created and do not support removal.
+ */
+public class CopyOnWriteCustomHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private final AtomicReference<PersistentCustomHashMap<K, V>> current;
+
+    public CopyOnWriteCustomHashMap() {
+        this.current = new AtomicReference<>(PersistentCustomHashMap.empty());
+    }
+
+    public CopyOnWriteCustomHashMap(Map<? extends K, ? extends V> map) {
+        this.current = new AtomicReference<>(PersistentCustomHashMap.copyOf(map));
+    }
+
+    /** The current version; later writes to this map do not show up in it. */
+    public PersistentCustomHashMap<K, V> snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Replaces the contents with {@code update} applied to the current
+     * version, atomically. {@code update} may run more than once under
+     * contention, so it must have no side effects. Returns the installed version.
+     */
+    public PersistentCustomHashMap<K, V> update(UnaryOperator<PersistentCustomHashMap<K, V>> update) {
+        while (true) {
+            PersistentCustomHashMap<K, V> map = current.get();
+            PersistentCustomHashMap<K, V> next = Objects.requireNonNull(update.apply(map));
+            if (next == map || current.compareAndSet(map, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        return current.get().get(key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return current.get().getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return current.get().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return current.get().size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        current.get().forEach(action);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        while (true) {
+            PersistentCustomHashMap<K, V> map = current.get();
+            PersistentCustomHashMap<K, V> next = map.with(key, value);
+            if (next == map || current.compareAndSet(map, next)) {
+                return map.get(key);
+            }
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        while (true) {
+            PersistentCustomHashMap<K, V> map = current.get();
+            if (map.containsKey(key)) {
+                return map.get(key);
+            }
+            if (current.compareAndSet(map, map.with(key, value))) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        while (true) {
+            PersistentCustomHashMap<K, V> map = current.get();
+            PersistentCustomHashMap<K, V> next = map.without(key);
+            if (next == map || current.compareAndSet(map, next)) {
+                return map.get(key);
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        while (true) {
+            PersistentCustomHashMap<K, V> map = current.get();
+            if (!map.containsKey(key) || !Objects.equals(map.get(key), value)) {
+                return false;
+            }
+            if (current.compareAndSet(map, map.without(key))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        while (true) {
+            PersistentCustomHashMap<K, V> map = current.get();
+            if (!map.containsKey(key) || !Objects.equals(map.get(key), oldValue)) {
+                return false;
+            }
+            if (current.compareAndSet(map, map.with(key, newValue))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        while (true) {
+            PersistentCustomHashMap<K, V> map = current.get();
+            if (!map.containsKey(key)) {
+                return null;
+            }
+            if (current.compareAndSet(map, map.with(key, value))) {
+                return map.get(key);
+            }
+        }
+    }
+
+    /** Adds every entry of {@code m} as one atomic update. */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        update(map -> map.withAll(m));
+    }
+
+    @Override
+    public void clear() {
+        current.set(PersistentCustomHashMap.empty());
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return current.get().entrySet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || current.get().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return current.get().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return current.get().toString();
+    }
+}
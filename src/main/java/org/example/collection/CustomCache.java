@@ -0,0 +1,339 @@
+package org.example.collection;
+
+import java.util.Objects;
+
+/**
+ * Bounded {@link CustomHashMap} that evicts entries once their total weight
+ * goes over a maximum. Every entry is also linked into an access-ordered
+ * queue through its node, so finding the eviction victim is O(1) and never
+ * scans the table.
+ *
+ * <p>With {@link EvictionPolicy#LRU} the least recently used entry is
+ * evicted. With {@link EvictionPolicy#TINY_LFU} new entries first go into a
+ * small LRU window; entries leaving the window are admitted to the main
+ * queue only if a {@link FrequencySketch} says they are used more often
+ * than the entry they would push out, so a scan of one-off keys cannot
+ * flush the popular ones.
+ *
+ * <p>Not thread-safe. Entries are weighed when inserted or updated.
+ */
+public class CustomCache<K, V> extends CustomHashMap<K, V> {
+
+    public enum EvictionPolicy {
+        LRU,
+        TINY_LFU
+    }
+
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    private static final byte WINDOW = 0;
+    private static final byte MAIN = 1;
+    private static final int MAXIMUM_PRESIZE = 1 << 16;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final Weigher<? super K, ? super V> weigher;
+    private final EvictionPolicy policy;
+    private final FrequencySketch sketch;
+
+    private LinkedNode<K, V> windowHead;
+    private LinkedNode<K, V> windowTail;
+    private LinkedNode<K, V> mainHead;
+    private LinkedNode<K, V> mainTail;
+    private long windowWeight;
+    private long weightedSize;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public CustomCache(long maximumSize) {
+        this(maximumSize, EvictionPolicy.LRU);
+    }
+
+    public CustomCache(long maximumSize, EvictionPolicy policy) {
+        this(maximumSize, (key, value) -> 1, policy);
+    }
+
+    /**
+     * Creates a cache bounded by the sum of {@code weigher} over its entries
+     * rather than by their number.
+     */
+    public CustomCache(long maximumWeight, Weigher<? super K, ? super V> weigher, EvictionPolicy policy) {
+        super((int) Math.min(Math.max(maximumWeight, 0), MAXIMUM_PRESIZE));
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Illegal maximum weight: " + maximumWeight);
+        }
+        this.maximumWeight = maximumWeight;
+        this.weigher = Objects.requireNonNull(weigher);
+        this.policy = Objects.requireNonNull(policy);
+        if (policy == EvictionPolicy.TINY_LFU) {
+            windowMaximum = Math.max(1, maximumWeight / 100);
+            sketch = new FrequencySketch(maximumWeight);
+        } else {
+            windowMaximum = 0;
+            sketch = null;
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = getNode(key);
+        if (sketch != null) {
+            sketch.increment(node != null ? node.hash : hash(key));
+        }
+        if (node == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        afterNodeAccess(node);
+        return node.value;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        windowHead = windowTail = mainHead = mainTail = null;
+        windowWeight = 0;
+        weightedSize = 0;
+    }
+
+    // a batch bigger than the bound would be evicted anyway, so do not grow for it
+    @Override
+    void presizeForBatch(int incoming) {
+        super.presizeForBatch((int) Math.min(incoming, Math.max(0, maximumWeight - weightedSize)));
+    }
+
+    public long maximumWeight() {
+        return maximumWeight;
+    }
+
+    public long weightedSize() {
+        return weightedSize;
+    }
+
+    public EvictionPolicy policy() {
+        return policy;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    // node hooks
+
+    @Override
+    Node<K, V> newNode(int hash, K key, V value, Node<K, V> next) {
+        LinkedNode<K, V> node = new LinkedNode<>(hash, key, value, next);
+        linkNew(node);
+        return node;
+    }
+
+    @Override
+    TreeNode<K, V> newTreeNode(int hash, K key, V value, Node<K, V> next) {
+        TreeNode<K, V> node = new TreeNode<>(hash, key, value, next);
+        linkNew(node);
+        return node;
+    }
+
+    @Override
+    Node<K, V> replacementNode(Node<K, V> p, Node<K, V> next) {
+        LinkedNode<K, V> node = new LinkedNode<>(p.hash, p.key, p.value, next);
+        transferLinks((LinkedNode<K, V>) p, node);
+        return node;
+    }
+
+    @Override
+    TreeNode<K, V> replacementTreeNode(Node<K, V> p, Node<K, V> next) {
+        TreeNode<K, V> node = new TreeNode<>(p.hash, p.key, p.value, next);
+        transferLinks((LinkedNode<K, V>) p, node);
+        return node;
+    }
+
+    @Override
+    void afterNodeAccess(Node<K, V> p) {
+        LinkedNode<K, V> node = (LinkedNode<K, V>) p;
+        if (node.after != null) {
+            unlink(node);
+            linkLast(node);
+        }
+    }
+
+    @Override
+    void afterNodeUpdate(Node<K, V> p, V oldValue) {
+        LinkedNode<K, V> node = (LinkedNode<K, V>) p;
+        int weight = weigh(node.key, node.value);
+        if (node.queue == WINDOW) {
+            windowWeight += weight - weight(node);
+        }
+        weightedSize += weight - weight(node);
+        setWeight(node, weight);
+        if (sketch != null) {
+            sketch.increment(node.hash);
+        }
+        afterNodeAccess(node);
+        evict();
+    }
+
+    @Override
+    void afterNodeInsertion() {
+        evict();
+    }
+
+    @Override
+    void afterNodeRemoval(Node<K, V> p) {
+        LinkedNode<K, V> node = (LinkedNode<K, V>) p;
+        unlink(node);
+        if (node.queue == WINDOW) {
+            windowWeight -= weight(node);
+        }
+        weightedSize -= weight(node);
+    }
+
+    private int weigh(K key, V value) {
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight " + weight + " for key " + key);
+        }
+        return weight;
+    }
+
+    private void linkNew(LinkedNode<K, V> node) {
+        setWeight(node, weigh(node.key, node.value));
+        node.queue = policy == EvictionPolicy.TINY_LFU ? WINDOW : MAIN;
+        if (node.queue == WINDOW) {
+            windowWeight += weight(node);
+        }
+        weightedSize += weight(node);
+        if (sketch != null) {
+            sketch.increment(node.hash);
+        }
+        linkLast(node);
+    }
+
+    private void evict() {
+        LinkedNode<K, V> candidate = null;
+        while (windowWeight > windowMaximum && windowHead != null) {
+            LinkedNode<K, V> node = windowHead;
+            unlink(node);
+            windowWeight -= weight(node);
+            node.queue = MAIN;
+            linkLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        while (weightedSize > maximumWeight) {
+            LinkedNode<K, V> victim = mainHead;
+            if (victim == null) {
+                evictEntry(windowHead);
+            } else if (candidate == null || candidate == victim) {
+                if (candidate == victim) {
+                    candidate = victim.after;
+                }
+                evictEntry(victim);
+            } else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                evictEntry(victim);
+            } else {
+                LinkedNode<K, V> next = candidate.after;
+                evictEntry(candidate);
+                candidate = next;
+            }
+        }
+    }
+
+    // evict() holds on to queue nodes, so the bins must not be restructured under it
+    private void evictEntry(LinkedNode<K, V> node) {
+        removeKey(node.key, false);
+        evictionCount++;
+    }
+
+    // queue links
+
+    private void linkLast(LinkedNode<K, V> node) {
+        if (node.queue == WINDOW) {
+            node.before = windowTail;
+            if (windowTail == null) {
+                windowHead = node;
+            } else {
+                windowTail.after = node;
+            }
+            windowTail = node;
+        } else {
+            node.before = mainTail;
+            if (mainTail == null) {
+                mainHead = node;
+            } else {
+                mainTail.after = node;
+            }
+            mainTail = node;
+        }
+    }
+
+    private void unlink(LinkedNode<K, V> node) {
+        LinkedNode<K, V> before = node.before;
+        LinkedNode<K, V> after = node.after;
+        if (before == null) {
+            if (node.queue == WINDOW) windowHead = after; else mainHead = after;
+        } else {
+            before.after = after;
+        }
+        if (after == null) {
+            if (node.queue == WINDOW) windowTail = before; else mainTail = before;
+        } else {
+            after.before = before;
+        }
+        node.before = null;
+        node.after = null;
+    }
+
+    private void transferLinks(LinkedNode<K, V> src, LinkedNode<K, V> dst) {
+        setWeight(dst, weight(src));
+        dst.queue = src.queue;
+        LinkedNode<K, V> before = dst.before = src.before;
+        LinkedNode<K, V> after = dst.after = src.after;
+        if (before == null) {
+            if (dst.queue == WINDOW) windowHead = dst; else mainHead = dst;
+        } else {
+            before.after = dst;
+        }
+        if (after == null) {
+            if (dst.queue == WINDOW) windowTail = dst; else mainTail = dst;
+        } else {
+            after.before = dst;
+        }
+    }
+
+    // the weight of an entry is kept in the int slot of its node
+    private static int weight(LinkedNode<?, ?> node) {
+        return node.intSlot;
+    }
+
+    private static void setWeight(LinkedNode<?, ?> node, int weight) {
+        node.intSlot = weight;
+    }
+}
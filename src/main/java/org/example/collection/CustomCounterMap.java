@@ -0,0 +1,165 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMap.LinkedNode;
+import org.example.collection.CustomHashMap.Node;
+import org.example.collection.CustomHashMap.TreeNode;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Map from keys to {@code long} counts. A count lives in a primitive slot of
+ * the {@link CustomHashMap} node itself, so there is no boxed value per
+ * key, and {@link #increment(Object, long)} finds or adds its key in one bin
+ * traversal. Missing keys count as 0; a key whose count drops to 0 stays in
+ * the map until it is removed.
+ *
+ * <p>Not thread-safe.
+ */
+public class CustomCounterMap<K> {
+
+    private final Counts<K> counts = new Counts<>();
+
+    public CustomCounterMap() {
+    }
+
+    public CustomCounterMap(int expectedSize) {
+        counts.ensureCapacity(expectedSize);
+    }
+
+    public long get(Object key) {
+        Node<K, Void> node = counts.getNode(key);
+        return node == null ? 0 : count(node);
+    }
+
+    public long increment(K key) {
+        return increment(key, 1);
+    }
+
+    /** Adds {@code delta} to the count of {@code key} and returns the new count. */
+    public long increment(K key, long delta) {
+        counts.pendingCount = delta;
+        Node<K, Void> node = counts.putIfAbsentNode(key, null);
+        if (node == null) {
+            return delta;
+        }
+        long count = count(node) + delta;
+        setCount(node, count);
+        return count;
+    }
+
+    /** Sets the count of {@code key} and returns the previous one, 0 if it had none. */
+    public long put(K key, long count) {
+        counts.pendingCount = count;
+        Node<K, Void> node = counts.putIfAbsentNode(key, null);
+        if (node == null) {
+            return 0;
+        }
+        long previous = count(node);
+        setCount(node, count);
+        return previous;
+    }
+
+    /** Removes {@code key} and returns its count, 0 if it had none. */
+    public long remove(Object key) {
+        counts.removed = null;
+        counts.remove(key);
+        Node<K, Void> node = counts.removed;
+        counts.removed = null;
+        return node == null ? 0 : count(node);
+    }
+
+    public boolean containsKey(Object key) {
+        return counts.containsKey(key);
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    public void clear() {
+        counts.clear();
+    }
+
+    /** Sum of all counts. */
+    public long total() {
+        long[] total = new long[1];
+        counts.forEachNode(node -> total[0] += count(node));
+        return total[0];
+    }
+
+    public void forEach(ObjLongConsumer<? super K> action) {
+        Objects.requireNonNull(action);
+        counts.forEachNode(node -> action.accept(node.key, count(node)));
+    }
+
+    /** The keys, backed by this map; removing a key removes its count. */
+    public Set<K> keySet() {
+        return counts.keySet();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, count) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(key).append('=').append(count);
+        });
+        return sb.append('}').toString();
+    }
+
+    // every node is a LinkedNode, and its long slot holds the count
+    private static long count(Node<?, ?> node) {
+        return ((LinkedNode<?, ?>) node).longSlot;
+    }
+
+    private static void setCount(Node<?, ?> node, long count) {
+        ((LinkedNode<?, ?>) node).longSlot = count;
+    }
+
+    private static final class Counts<K> extends CustomHashMap<K, Void> {
+        // count of the node the current insertion creates
+        long pendingCount;
+        Node<K, Void> removed;
+
+        @Override
+        Node<K, Void> newNode(int hash, K key, Void value, Node<K, Void> next) {
+            LinkedNode<K, Void> node = new LinkedNode<>(hash, key, null, next);
+            setCount(node, pendingCount);
+            return node;
+        }
+
+        @Override
+        TreeNode<K, Void> newTreeNode(int hash, K key, Void value, Node<K, Void> next) {
+            TreeNode<K, Void> node = new TreeNode<>(hash, key, null, next);
+            setCount(node, pendingCount);
+            return node;
+        }
+
+        @Override
+        Node<K, Void> replacementNode(Node<K, Void> p, Node<K, Void> next) {
+            LinkedNode<K, Void> node = new LinkedNode<>(p.hash, p.key, null, next);
+            setCount(node, count(p));
+            return node;
+        }
+
+        @Override
+        TreeNode<K, Void> replacementTreeNode(Node<K, Void> p, Node<K, Void> next) {
+            TreeNode<K, Void> node = new TreeNode<>(p.hash, p.key, null, next);
+            setCount(node, count(p));
+            return node;
+        }
+
+        @Override
+        void afterNodeRemoval(Node<K, Void> p) {
+            removed = p;
+        }
+    }
+}
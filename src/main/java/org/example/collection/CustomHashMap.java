@@ -1,19 +1,85 @@
 package org.example.collection;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-
-public class CustomHashMap<K extends Comparable<K>, V> {
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class CustomHashMap<K, V> extends AbstractMap<K, V> {
 
     private static final int INITIAL_CAPACITY = 16;
     private static final float LOAD_FACTOR = 0.75f;
     private static final int TREEIFY_THRESHOLD = 8;
+    private static final int UNTREEIFY_THRESHOLD = 6;
     private static final int MIN_TREEIFY_CAPACITY = 64;
-
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int GROUP_BY_BIN_THRESHOLD = 1024;
+    // non-empty old bins an update moves during an incremental resize, and
+    // how many old bins it may look at to find them
+    private static final int RESIZE_STEP = 4;
+    private static final int RESIZE_SCAN_LIMIT = 64;
+    // a red-black bin this deep holds dozens of colliding keys at the very least
+    private static final int HASH_FLOOD_DEPTH = 10;
+    private static final AtomicLong HASH_FLOOD_REHASHES = new AtomicLong();
+    private static final System.Logger LOGGER = System.getLogger(CustomHashMap.class.getName());
+    // a constant to the JIT, so unless -Dorg.example.collection.stats=true the counters compile away
+    static final boolean STATS = "true".equals(System.getProperty("org.example.collection.stats"));
+
+    private final float loadFactor;
+    private final int minimumCapacity;
+    private float lowWaterMark;
+    private boolean incrementalResize;
+    private boolean seeded;
+    private long seed0;
+    private long seed1;
+    private boolean floodSuspected;
+    private long hitCount;
+    private long missCount;
+    private int resizeCount;
+    private long resizeNanos;
+    private int threshold;
+    // size below which a removal halves the table, -1 while auto-shrink is off
+    private int shrinkThreshold = -1;
     private int size = 0;
+    // structural modifications, checked by iterators to fail fast
+    private int modCount = 0;
     private Node<K, V>[] table;
-
-    static class Node<K, V> {
-        final int hash;
+    // old table of an incremental resize; bins already moved are null
+    private Node<K, V>[] resizing;
+    private int transferIndex;
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    static class Node<K, V> implements Map.Entry<K, V> {
+        // rewritten only when the map switches to seeded hashing
+        int hash;
         final K key;
         V value;
         Node<K, V> next;
@@ -28,9 +94,47 @@ public class CustomHashMap<K extends Comparable<K>, V> {
         public final K getKey() { return key; }
         public final V getValue() { return value; }
         public final String toString() { return key + "=" + value; }
+
+        public final V setValue(V newValue) {
+            V oldValue = value;
+            value = newValue;
+            return oldValue;
+        }
+
+        public final int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        public final boolean equals(Object o) {
+            if (o == this) return true;
+            return o instanceof Map.Entry
+                    && Objects.equals(key, ((Map.Entry<?, ?>) o).getKey())
+                    && Objects.equals(value, ((Map.Entry<?, ?>) o).getValue());
+        }
+    }
+
+    /**
+     * Node with before/after links for subclasses that keep their entries in
+     * an intrusive list, such as the access queues of {@link CustomCache} or
+     * the timer wheel buckets of {@link ExpiringCustomHashMap}. Plain bins
+     * never use it.
+     */
+    static class LinkedNode<K, V> extends Node<K, V> {
+        LinkedNode<K, V> before;
+        LinkedNode<K, V> after;
+        byte queue;
+        boolean fixedExpiry;
+        // free for the subclass that creates the node, which reads them
+        // through accessors named after what it keeps there
+        int intSlot;
+        long longSlot;
+
+        LinkedNode(int hash, K key, V value, Node<K, V> next) {
+            super(hash, key, value, next);
+        }
     }
 
-    static final class TreeNode<K extends Comparable<K>, V> extends Node<K, V> {
+    static final class TreeNode<K, V> extends LinkedNode<K, V> {
         TreeNode<K, V> left;
         TreeNode<K, V> right;
         TreeNode<K, V> parent;
@@ -42,43 +146,292 @@ public class CustomHashMap<K extends Comparable<K>, V> {
         }
     }
 
-    @SuppressWarnings("unchecked")
     public CustomHashMap() {
-        table = new Node[INITIAL_CAPACITY];
+        this(INITIAL_CAPACITY, LOAD_FACTOR);
+    }
+
+    /**
+     * Creates a map whose table already fits {@code expectedSize} entries
+     * at the default load factor, so filling it up to that size never resizes.
+     */
+    public CustomHashMap(int expectedSize) {
+        this(capacityFor(expectedSize, LOAD_FACTOR), LOAD_FACTOR);
+    }
+
+    public CustomHashMap(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, false);
+    }
+
+    /**
+     * With {@code seededHashing} keys are hashed with a random per-instance
+     * key from the start, so bin placement cannot be predicted from outside.
+     * Without it the map switches to seeded hashing by itself once a bin of
+     * String keys gets suspiciously deep; other keys with equal
+     * {@code hashCode()} would collide under any seed and stay in the tree.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public CustomHashMap(int initialCapacity, float loadFactor, boolean seededHashing) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+        }
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        int capacity = tableSizeFor(initialCapacity);
+        table = new Node[capacity];
+        threshold = thresholdFor(capacity);
+        minimumCapacity = capacity;
+        if (seededHashing) {
+            newSeed();
+        }
+    }
+
+    private static int tableSizeFor(int capacity) {
+        if (capacity <= 1) return 1;
+        if (capacity >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    private static int capacityFor(int expectedSize, float loadFactor) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        double capacity = Math.ceil(expectedSize / (double) loadFactor);
+        return tableSizeFor((int) Math.min(capacity, MAXIMUM_CAPACITY));
+    }
+
+    private int thresholdFor(int capacity) {
+        if (capacity >= MAXIMUM_CAPACITY) return Integer.MAX_VALUE;
+        return (int) Math.min(capacity * loadFactor, Integer.MAX_VALUE);
+    }
+
+    private int shrinkThresholdFor(int capacity) {
+        if (lowWaterMark == 0 || capacity <= minimumCapacity) return -1;
+        return (int) (capacity * lowWaterMark);
+    }
+
+    int hash(Object key) {
+        return hash(key, seeded, seed0, seed1);
     }
 
-    private int hash(K key) {
+    // shared with FrozenCustomHashMap, which keeps the hashing of the map it was frozen from
+    static int hash(Object key, boolean seeded, long seed0, long seed1) {
         if (key == null) return 0;
+        if (seeded) return seededHash(key, seed0, seed1);
         int h = key.hashCode();
         return h ^ (h >>> 16);
     }
 
+    // strings are hashed by content with SipHash-1-3, so equal String.hashCode()
+    // values no longer collide; other keys only get their hashCode() mixed
+    private static int seededHash(Object key, long seed0, long seed1) {
+        long h = key instanceof String
+                ? sipHash13((String) key, seed0, seed1)
+                : mix64(key.hashCode() ^ seed0);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // SipHash with one compression and three finalization rounds over the
+    // UTF-16 chars, four per 64-bit word
+    private static long sipHash13(String s, long k0, long k1) {
+        long v0 = k0 ^ 0x736F6D6570736575L;
+        long v1 = k1 ^ 0x646F72616E646F6DL;
+        long v2 = k0 ^ 0x6C7967656E657261L;
+        long v3 = k1 ^ 0x7465646279746573L;
+        int length = s.length();
+        int i = 0;
+        boolean last = false;
+        while (!last) {
+            long m;
+            if (i + 4 <= length) {
+                m = s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+                i += 4;
+            } else {
+                m = (long) length << 56;
+                for (int shift = 0; i < length; i++, shift += 16) {
+                    m |= (long) s.charAt(i) << shift;
+                }
+                last = true;
+            }
+            v3 ^= m;
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+            v0 ^= m;
+        }
+        v2 ^= 0xFF;
+        for (int round = 0; round < 3; round++) {
+            v0 += v1; v1 = Long.rotateLeft(v1, 13); v1 ^= v0; v0 = Long.rotateLeft(v0, 32);
+            v2 += v3; v3 = Long.rotateLeft(v3, 16); v3 ^= v2;
+            v0 += v3; v3 = Long.rotateLeft(v3, 21); v3 ^= v0;
+            v2 += v1; v1 = Long.rotateLeft(v1, 17); v1 ^= v2; v2 = Long.rotateLeft(v2, 32);
+        }
+        return v0 ^ v1 ^ v2 ^ v3;
+    }
+
+    private void newSeed() {
+        SecureRandom random = SeedSource.RANDOM;
+        seed0 = random.nextLong();
+        seed1 = random.nextLong();
+        seeded = true;
+    }
+
+    // created on first use, so unseeded maps never pay for SecureRandom
+    private static final class SeedSource {
+        static final SecureRandom RANDOM = new SecureRandom();
+    }
+
+    public boolean isSeededHashing() {
+        return seeded;
+    }
+
+    /** Number of maps in this JVM that switched to seeded hashing because of a deep bin. */
+    public static long hashFloodRehashCount() {
+        return HASH_FLOOD_REHASHES.get();
+    }
+
+    // a tree insertion went deeper than any honest key set should reach; only
+    // String keys hash differently once seeded, other keys with equal
+    // hashCode() would stay in one bin, so the tree is kept for them
+    private void checkTreeDepth(TreeNode<K, V> node) {
+        if (seeded) {
+            return;
+        }
+        int depth = 0;
+        int strings = 0;
+        for (TreeNode<K, V> p = node; p != null; p = p.parent) {
+            depth++;
+            if (p.key instanceof String) {
+                strings++;
+            }
+        }
+        if (depth > HASH_FLOOD_DEPTH && strings > 1) {
+            floodSuspected = true;
+        }
+    }
+
+    private void rehashWithSeed() {
+        floodSuspected = false;
+        if (seeded) {
+            return;
+        }
+        finishResize();
+        newSeed();
+        for (Node<K, V> head : table) {
+            for (Node<K, V> node = firstInBin(head); node != null; node = nextInBin(node)) {
+                node.hash = hash(node.key);
+            }
+        }
+        rehash(table.length);
+        HASH_FLOOD_REHASHES.incrementAndGet();
+        LOGGER.log(System.Logger.Level.WARNING,
+                "Possible hash flooding: a bin of a map with {0} entries grew deeper than {1}; switched to seeded hashing",
+                size, HASH_FLOOD_DEPTH);
+    }
+
     private int index(int hash) {
         return (table.length - 1) & hash;
     }
 
+    @Override
     public V put(K key, V value) {
-        int hash = hash(key);
-        int index = index(hash);
+        Node<K, V> existing = putIfAbsentNode(key, value);
+        return existing != null ? replaceValue(existing, value) : null;
+    }
 
-        if (table[index] == null) {
-            table[index] = new Node<>(hash, key, value, null);
-            size++;
-        } else {
-            V oldValue = putInBucket(table[index], hash, key, value, index);
-            if (oldValue != null) {
-                return oldValue;
-            }
+    // returns the node already holding key, leaving it untouched, or null after
+    // adding key through newNode(); one bin traversal either way
+    Node<K, V> putIfAbsentNode(K key, V value) {
+        Node<K, V> existing = putNode(hash(key), key, value);
+        if (existing == null) {
+            afterAdd();
         }
+        return existing;
+    }
 
-        if (size > table.length * LOAD_FACTOR) {
+    // bookkeeping once a new node has been linked into its bin
+    private void afterAdd() {
+        size++;
+        modCount++;
+        if (size > threshold) {
             resize();
         }
+        if (floodSuspected) {
+            rehashWithSeed();
+        }
+        afterNodeInsertion();
+    }
 
-        return null;
+    private V replaceValue(Node<K, V> node, V value) {
+        V oldValue = node.value;
+        node.value = value;
+        afterNodeUpdate(node, oldValue);
+        return oldValue;
+    }
+
+    // creation and callback hooks, overridden by subclasses that track entries
+
+    Node<K, V> newNode(int hash, K key, V value, Node<K, V> next) {
+        return new Node<>(hash, key, value, next);
+    }
+
+    TreeNode<K, V> newTreeNode(int hash, K key, V value, Node<K, V> next) {
+        return new TreeNode<>(hash, key, value, next);
+    }
+
+    // called when a tree node turns back into a list node
+    Node<K, V> replacementNode(Node<K, V> p, Node<K, V> next) {
+        return new Node<>(p.hash, p.key, p.value, next);
+    }
+
+    // called when a list node is moved into a tree bin
+    TreeNode<K, V> replacementTreeNode(Node<K, V> p, Node<K, V> next) {
+        return new TreeNode<>(p.hash, p.key, p.value, next);
+    }
+
+    void afterNodeAccess(Node<K, V> p) {
+    }
+
+    void afterNodeUpdate(Node<K, V> p, V oldValue) {
+    }
+
+    void afterNodeInsertion() {
+    }
+
+    void afterNodeRemoval(Node<K, V> p) {
+    }
+
+    // false for entries a subclass already considers gone, such as expired ones
+    boolean isLive(Node<K, V> p) {
+        return true;
     }
 
-    private V putInBucket(Node<K, V> head, int hash, K key, V value, int index) {
+    // returns the node already holding key, leaving it untouched, or null after
+    // linking in a new node; size, modCount and the resize check are up to the caller
+    private Node<K, V> putNode(int hash, K key, V value) {
+        if (resizing != null) {
+            // only an insertion moves bins, so readers walking the old and the
+            // new table see no layout change from non-structural updates
+            Node<K, V> existing = findInBin(binFor(hash), hash, key);
+            if (existing != null) {
+                return existing;
+            }
+            helpResize(hash);
+        }
+        int index = index(hash);
+        Node<K, V> head = table[index];
+        if (head == null) {
+            table[index] = newNode(hash, key, value, null);
+            return null;
+        }
         if (head instanceof TreeNode) {
             return putInTree((TreeNode<K, V>) head, hash, key, value, index);
         } else {
@@ -86,16 +439,14 @@ public class CustomHashMap<K extends Comparable<K>, V> {
         }
     }
 
-    private V putInLinkedList(Node<K, V> head, int hash, K key, V value, int index) {
+    private Node<K, V> putInLinkedList(Node<K, V> head, int hash, K key, V value, int index) {
         Node<K, V> current = head;
         Node<K, V> prev = null;
         int binCount = 0;
 
         while (current != null) {
             if (current.hash == hash && Objects.equals(current.key, key)) {
-                V oldValue = current.value;
-                current.value = value;
-                return oldValue;
+                return current;
             }
             prev = current;
             current = current.next;
@@ -103,11 +454,10 @@ public class CustomHashMap<K extends Comparable<K>, V> {
         }
 
         if (prev == null) {
-            table[index] = new Node<>(hash, key, value, null);
+            table[index] = newNode(hash, key, value, null);
         } else {
-            prev.next = new Node<>(hash, key, value, null);
+            prev.next = newNode(hash, key, value, null);
         }
-        size++;
 
         if (binCount >= TREEIFY_THRESHOLD - 1) {
             if (table.length >= MIN_TREEIFY_CAPACITY) {
@@ -120,23 +470,61 @@ public class CustomHashMap<K extends Comparable<K>, V> {
         return null;
     }
 
-    private V putInTree(TreeNode<K,V> root, int hash, K key, V value, int index) {
-        TreeNode<K, V> existNode = findTreeNode(root,key);
+    private Node<K, V> putInTree(TreeNode<K,V> root, int hash, K key, V value, int index) {
+        TreeNode<K, V> existNode = findTreeNode(root, hash, key);
         if (existNode != null) {
-            V oldValue = existNode.value;
-            existNode.value = value;
-            return oldValue;
+            return existNode;
         }
 
-        TreeNode<K, V> newNode = new TreeNode<>(hash, key, value, null);
+        TreeNode<K, V> newNode = newTreeNode(hash, key, value, null);
         TreeNode<K, V> result = insertIntoTree(root, newNode);
         if (result != root) {
             table[index] = result;
         }
-        size++;
+        checkTreeDepth(newNode);
         return null;
     }
 
+    /**
+     * Total order of the nodes in a tree bin. Nodes are ordered by their cached
+     * hash first, so most steps of a lookup compare two ints. Only keys with
+     * equal hashes are ordered by class and, within one class that implements
+     * {@code Comparable}, by {@code compareTo}; identity breaks the last ties,
+     * so keys without {@code Comparable} still get balanced bins.
+     */
+    private static int treeOrder(Object a, int hashA, Object b, int hashB) {
+        int cmp = searchOrder(a, hashA, b, hashB);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return System.identityHashCode(a) <= System.identityHashCode(b) ? -1 : 1;
+    }
+
+    // treeOrder() without the identity step; 0 means the lookup must try both subtrees
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int searchOrder(Object a, int hashA, Object b, int hashB) {
+        if (hashA != hashB) {
+            return hashA < hashB ? -1 : 1;
+        }
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        Class<?> classA = a.getClass();
+        Class<?> classB = b.getClass();
+        if (classA != classB) {
+            int cmp = classA.getName().compareTo(classB.getName());
+            if (cmp == 0) {
+                cmp = Integer.compare(System.identityHashCode(classA), System.identityHashCode(classB));
+            }
+            if (cmp != 0) {
+                return cmp;
+            }
+        } else if (a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return 0;
+    }
+
     private TreeNode<K, V> insertIntoTree(TreeNode<K, V> root, TreeNode<K, V> newNode) {
         if (root == null) {
             newNode.red = false;
@@ -145,25 +533,13 @@ public class CustomHashMap<K extends Comparable<K>, V> {
 
         TreeNode<K, V> parent = null;
         TreeNode<K, V> current = root;
+        int cmp = 0;
 
         while (current != null) {
             parent = current;
+            cmp = treeOrder(newNode.key, newNode.hash, current.key, current.hash);
 
-            int cmp;
-            if (newNode.key == null && current.key == null) {
-                cmp = 0;
-            } else if (newNode.key == null) {
-                cmp = -1;
-            } else if (current.key == null) {
-                cmp = 1;
-            } else {
-                cmp = newNode.key.compareTo(current.key);
-            }
-
-            if (cmp == 0) {
-                current.value = newNode.value;
-                return root;
-            } else if (cmp < 0) {
+            if (cmp < 0) {
                 current = current.left;
             } else {
                 current = current.right;
@@ -171,273 +547,2202 @@ public class CustomHashMap<K extends Comparable<K>, V> {
         }
 
         newNode.parent = parent;
-        int cmp;
-        if (newNode.key == null) {
-            cmp = -1;
-        } else if (parent.key == null) {
-            cmp = 1;
-        } else {
-            cmp = newNode.key.compareTo(parent.key);
-        }
-
+        newNode.red = true;
         if (cmp < 0) {
             parent.left = newNode;
         } else {
             parent.right = newNode;
         }
 
-        root.red = false;
-        return root;
+        return balanceInsertion(root, newNode);
     }
 
-    public V get(K key) {
-        int hash = hash(key);
-        int index = index(hash);
-        Node<K, V> node = table[index];
+    private static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> root, TreeNode<K, V> p) {
+        TreeNode<K, V> r = p.right;
+        if (r == null) return root;
 
-        if (node == null) {
-            return null;
+        p.right = r.left;
+        if (r.left != null) {
+            r.left.parent = p;
         }
-
-        if (node instanceof TreeNode) {
-            return getFromTree((TreeNode<K, V>) node, key);
+        r.parent = p.parent;
+        if (p.parent == null) {
+            root = r;
+            r.red = false;
+        } else if (p.parent.left == p) {
+            p.parent.left = r;
         } else {
-            return getFromLinkedList(node, key);
+            p.parent.right = r;
         }
+        r.left = p;
+        p.parent = r;
+        return root;
     }
 
-    private V getFromLinkedList(Node<K, V> head, K key) {
-        Node<K, V> current = head;
-        while (current != null) {
-            if (Objects.equals(current.key, key)) {
-                return current.value;
-            }
-            current = current.next;
+    private static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> root, TreeNode<K, V> p) {
+        TreeNode<K, V> l = p.left;
+        if (l == null) return root;
+
+        p.left = l.right;
+        if (l.right != null) {
+            l.right.parent = p;
         }
-        return null;
+        l.parent = p.parent;
+        if (p.parent == null) {
+            root = l;
+            l.red = false;
+        } else if (p.parent.right == p) {
+            p.parent.right = l;
+        } else {
+            p.parent.left = l;
+        }
+        l.right = p;
+        p.parent = l;
+        return root;
     }
 
-    private V getFromTree(TreeNode<K, V> root, K key) {
-        TreeNode<K, V> current = root;
-        while (current != null) {
-            int cmp;
-            if (key == null && current.key == null) {
-                cmp = 0;
-            } else if (key == null) {
-                cmp = -1;
-            } else if (current.key == null) {
-                cmp = 1;
-            } else {
-                cmp = key.compareTo(current.key);
+    private static <K, V> TreeNode<K, V> balanceInsertion(TreeNode<K, V> root, TreeNode<K, V> x) {
+        x.red = true;
+        while (true) {
+            TreeNode<K, V> xp = x.parent;
+            if (xp == null) {
+                x.red = false;
+                return x;
+            }
+            TreeNode<K, V> xpp = xp.parent;
+            if (!xp.red || xpp == null) {
+                return root;
             }
 
-            if (cmp == 0) {
-                return current.value;
-            } else if (cmp < 0) {
-                current = current.left;
+            if (xp == xpp.left) {
+                TreeNode<K, V> uncle = xpp.right;
+                if (uncle != null && uncle.red) {
+                    uncle.red = false;
+                    xp.red = false;
+                    xpp.red = true;
+                    x = xpp;
+                } else {
+                    if (x == xp.right) {
+                        x = xp;
+                        root = rotateLeft(root, x);
+                        xp = x.parent;
+                        xpp = xp == null ? null : xp.parent;
+                    }
+                    if (xp != null) {
+                        xp.red = false;
+                        if (xpp != null) {
+                            xpp.red = true;
+                            root = rotateRight(root, xpp);
+                        }
+                    }
+                }
             } else {
-                current = current.right;
+                TreeNode<K, V> uncle = xpp.left;
+                if (uncle != null && uncle.red) {
+                    uncle.red = false;
+                    xp.red = false;
+                    xpp.red = true;
+                    x = xpp;
+                } else {
+                    if (x == xp.left) {
+                        x = xp;
+                        root = rotateRight(root, x);
+                        xp = x.parent;
+                        xpp = xp == null ? null : xp.parent;
+                    }
+                    if (xp != null) {
+                        xp.red = false;
+                        if (xpp != null) {
+                            xpp.red = true;
+                            root = rotateLeft(root, xpp);
+                        }
+                    }
+                }
             }
         }
-        return null;
     }
 
-    public V remove(K key) {
-        int hash = hash(key);
-        int index = index(hash);
-        Node<K, V> node = table[index];
-
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = getNode(key);
         if (node == null) {
+            if (STATS) missCount++;
             return null;
         }
+        if (STATS) hitCount++;
+        afterNodeAccess(node);
+        return node.value;
+    }
 
-        if (node instanceof TreeNode) {
-            return removeFromTree((TreeNode<K, V>) node, key, index);
-        } else {
-            return removeFromLinkedList(node, key, index);
+    Node<K, V> getNode(Object key) {
+        return getNode(hash(key), key);
+    }
+
+    Node<K, V> getNode(int hash, Object key) {
+        Node<K, V> first = binFor(hash);
+        if (first == null) {
+            return null;
+        }
+        if (first instanceof TreeNode) {
+            return findTreeNode((TreeNode<K, V>) first, hash, key);
+        }
+        for (Node<K, V> current = first; current != null; current = current.next) {
+            if (current.hash == hash && Objects.equals(current.key, key)) {
+                return current;
+            }
         }
+        return null;
     }
 
-    private V removeFromLinkedList(Node<K, V> head, K key, int index) {
-        Node<K, V> current = head;
-        Node<K, V> prev = null;
+    @Override
+    public boolean containsKey(Object key) {
+        Node<K, V> node = getNode(key);
+        return node != null && isLive(node);
+    }
 
-        while (current != null) {
-            if (Objects.equals(current.key, key)) {
-                V oldValue = current.value;
-                if (prev == null) {
-                    table[index] = current.next;
-                } else {
-                    prev.next = current.next;
+    @Override
+    public boolean containsValue(Object value) {
+        for (Node<K, V>[] tab : binTables()) {
+            for (Node<K, V> head : tab) {
+                for (Node<K, V> node = firstInBin(head); node != null; node = nextInBin(node)) {
+                    if (Objects.equals(node.value, value)) {
+                        return true;
+                    }
                 }
-                size--;
-                return oldValue;
             }
-            prev = current;
-            current = current.next;
         }
+        return false;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> node = getNode(key);
+        if (node == null || !isLive(node)) {
+            return defaultValue;
+        }
+        afterNodeAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Maps {@code key} to {@code value} unless it already has a non-null
+     * value, which is returned instead.
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        int hash = hash(key);
+        Node<K, V> node = findInBin(binFor(hash), hash, key);
+        if (node == null) {
+            linkNode(hash, key, value);
+            return null;
+        }
+        if (node.value != null && isLive(node)) {
+            afterNodeAccess(node);
+            return node.value;
+        }
+        replaceValue(node, value);
         return null;
     }
 
-    private V removeFromTree(TreeNode<K, V> root, K key, int index) {
-        TreeNode<K, V> nodeToRemove = findTreeNode(root, key);
-        if (nodeToRemove == null) {
+    /** Replaces the value of {@code key} only if it is mapped; returns the old value. */
+    @Override
+    public V replace(K key, V value) {
+        Node<K, V> node = getNode(key);
+        if (node == null || !isLive(node)) {
             return null;
         }
+        return replaceValue(node, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Node<K, V> node = getNode(key);
+        if (node == null || !isLive(node) || !Objects.equals(node.value, oldValue)) {
+            return false;
+        }
+        replaceValue(node, newValue);
+        return true;
+    }
 
-        V oldValue = nodeToRemove.value;
-        TreeNode<K, V> newRoot = removeFromTree(root, nodeToRemove);
+    /**
+     * Returns the value of {@code key}, first computing and storing it if the
+     * key is absent or mapped to {@code null}. A {@code null} result stores
+     * nothing. The bin is searched once; a new node goes to the head of a
+     * list bin, so a miss does not walk the bin again.
+     *
+     * @throws ConcurrentModificationException if the function changes the map structurally
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        int hash = hash(key);
+        Node<K, V> node = findInBin(binFor(hash), hash, key);
+        if (node != null && node.value != null && isLive(node)) {
+            afterNodeAccess(node);
+            return node.value;
+        }
 
-        table[index] = newRoot;
-        size--;
-        return oldValue;
+        int expectedModCount = modCount;
+        V value = mappingFunction.apply(key);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (value == null) {
+            return null;
+        }
+        if (node != null) {
+            replaceValue(node, value);
+        } else {
+            linkNode(hash, key, value);
+        }
+        return value;
     }
 
-    private TreeNode<K, V> findTreeNode(TreeNode<K, V> root, K key) {
-        TreeNode<K, V> current = root;
-        while (current != null) {
-            int cmp;
-            if (key == null && current.key == null) {
-                cmp = 0;
-            } else if (key == null) {
-                cmp = -1;
-            } else if (current.key == null) {
-                cmp = 1;
-            } else {
-                cmp = key.compareTo(current.key);
+    /**
+     * Recomputes the value of a key that has a non-null value; a {@code null}
+     * result removes the entry.
+     *
+     * @throws ConcurrentModificationException if the function changes the map structurally
+     */
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        int hash = hash(key);
+        Node<K, V> node = findInBin(binFor(hash), hash, key);
+        if (node == null || node.value == null || !isLive(node)) {
+            return null;
+        }
+        int expectedModCount = modCount;
+        V value = remappingFunction.apply(key, node.value);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return updateOrRemove(node, hash, value);
+    }
+
+    /**
+     * Computes a new value from the current one, or from {@code null} if the
+     * key is absent; a {@code null} result removes the entry.
+     *
+     * @throws ConcurrentModificationException if the function changes the map structurally
+     */
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        int hash = hash(key);
+        Node<K, V> node = findInBin(binFor(hash), hash, key);
+        V oldValue = node == null || !isLive(node) ? null : node.value;
+
+        int expectedModCount = modCount;
+        V value = remappingFunction.apply(key, oldValue);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (node != null) {
+            return updateOrRemove(node, hash, value);
+        }
+        if (value != null) {
+            linkNode(hash, key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Stores {@code value} if the key has no non-null value, otherwise
+     * combines the two with {@code remappingFunction}; a {@code null} result
+     * removes the entry. {@code merge(key, 1, Integer::sum)} counts in a
+     * single bin search.
+     *
+     * @throws ConcurrentModificationException if the function changes the map structurally
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        int hash = hash(key);
+        Node<K, V> node = findInBin(binFor(hash), hash, key);
+        if (node == null) {
+            linkNode(hash, key, value);
+            return value;
+        }
+        V newValue;
+        if (node.value == null || !isLive(node)) {
+            newValue = value;
+        } else {
+            int expectedModCount = modCount;
+            newValue = remappingFunction.apply(node.value, value);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
+        }
+        return updateOrRemove(node, hash, newValue);
+    }
 
-            if (cmp == 0) {
+    private Node<K, V> findInBin(Node<K, V> head, int hash, Object key) {
+        if (head instanceof TreeNode) {
+            return findTreeNode((TreeNode<K, V>) head, hash, key);
+        }
+        for (Node<K, V> current = head; current != null; current = current.next) {
+            if (current.hash == hash && Objects.equals(current.key, key)) {
                 return current;
-            } else if (cmp < 0) {
-                current = current.left;
-            } else {
-                current = current.right;
+            }
+        }
+        return null;
+    }
+
+    // links a node for a key known to be absent from its bin
+    private void linkNode(int hash, K key, V value) {
+        helpResize(hash);
+        int index = index(hash);
+        Node<K, V> head = table[index];
+        if (head instanceof TreeNode) {
+            TreeNode<K, V> root = (TreeNode<K, V>) head;
+            TreeNode<K, V> node = newTreeNode(hash, key, value, null);
+            TreeNode<K, V> result = insertIntoTree(root, node);
+            if (result != root) {
+                table[index] = result;
+            }
+            checkTreeDepth(node);
+        } else {
+            table[index] = newNode(hash, key, value, head);
+            if (binLengthAtLeast(head, TREEIFY_THRESHOLD - 1)) {
+                if (table.length >= MIN_TREEIFY_CAPACITY) {
+                    treeifyBin(index);
+                } else {
+                    resize();
+                }
+            }
+        }
+        afterAdd();
+    }
+
+    private static boolean binLengthAtLeast(Node<?, ?> head, int length) {
+        for (int count = 0; count < length; count++) {
+            if (head == null) {
+                return false;
+            }
+            head = head.next;
+        }
+        return true;
+    }
+
+    private V updateOrRemove(Node<K, V> node, int hash, V value) {
+        if (value != null) {
+            replaceValue(node, value);
+        } else {
+            removeNode(node, hash);
+        }
+        return value;
+    }
+
+    // the node may still sit in its old bin; it is unlinked there and the
+    // migration step comes after, since moving a tree bin may replace its nodes
+    private void removeNode(Node<K, V> node, int hash) {
+        Node<K, V>[] tab = table;
+        int index = index(hash);
+        Node<K, V>[] old = resizing;
+        boolean inOldBin = old != null && old[hash & (old.length - 1)] != null;
+        if (inOldBin) {
+            tab = old;
+            index = hash & (old.length - 1);
+        }
+        Node<K, V> head = tab[index];
+        if (head instanceof TreeNode) {
+            tab[index] = removeFromTree((TreeNode<K, V>) head, (TreeNode<K, V>) node);
+        } else if (head == node) {
+            tab[index] = node.next;
+        } else {
+            Node<K, V> prev = head;
+            while (prev.next != node) {
+                prev = prev.next;
+            }
+            prev.next = node.next;
+        }
+        size--;
+        modCount++;
+        afterNodeRemoval(node);
+        if (!inOldBin) {
+            compactAfterRemoval(index);
+        }
+        helpResize(hash);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return removeKey(key, true);
+    }
+
+    /**
+     * Removes {@code key}; only a {@code movable} removal may turn a small
+     * tree bin back into a list or shrink the table. Callers that keep
+     * references to other nodes across the call, like iterators and cache
+     * eviction, pass {@code false}.
+     */
+    V removeKey(Object key, boolean movable) {
+        int hash = hash(key);
+        Node<K, V>[] tab = table;
+        int index = index(hash);
+        Node<K, V>[] old = resizing;
+        // an entry still in its old bin is taken from there; bins are only
+        // moved after a successful removal, so a miss changes no layout
+        boolean inOldBin = old != null && old[hash & (old.length - 1)] != null;
+        if (inOldBin) {
+            tab = old;
+            index = hash & (old.length - 1);
+        }
+        Node<K, V> node = tab[index];
+
+        if (node == null) {
+            return null;
+        }
+
+        int expectedModCount = modCount;
+        V oldValue;
+        if (node instanceof TreeNode) {
+            oldValue = removeFromTree(tab, (TreeNode<K, V>) node, hash, key, index, movable && !inOldBin);
+        } else {
+            oldValue = removeFromLinkedList(tab, node, hash, key, index, movable && !inOldBin);
+        }
+        if (movable && modCount != expectedModCount) {
+            helpResize(hash);
+        }
+        return oldValue;
+    }
+
+    private V removeFromLinkedList(Node<K, V>[] tab, Node<K, V> head, int hash, Object key,
+                                   int index, boolean movable) {
+        Node<K, V> current = head;
+        Node<K, V> prev = null;
+
+        while (current != null) {
+            if (current.hash == hash && Objects.equals(current.key, key)) {
+                V oldValue = current.value;
+                if (prev == null) {
+                    tab[index] = current.next;
+                } else {
+                    prev.next = current.next;
+                }
+                size--;
+                modCount++;
+                afterNodeRemoval(current);
+                if (movable) {
+                    compactAfterRemoval(index);
+                }
+                return oldValue;
+            }
+            prev = current;
+            current = current.next;
+        }
+        return null;
+    }
+
+    private V removeFromTree(Node<K, V>[] tab, TreeNode<K, V> root, int hash, Object key, int index, boolean movable) {
+        TreeNode<K, V> nodeToRemove = findTreeNode(root, hash, key);
+        if (nodeToRemove == null) {
+            return null;
+        }
+
+        V oldValue = nodeToRemove.value;
+        TreeNode<K, V> newRoot = removeFromTree(root, nodeToRemove);
+
+        tab[index] = newRoot;
+        size--;
+        modCount++;
+        afterNodeRemoval(nodeToRemove);
+        if (movable) {
+            compactAfterRemoval(index);
+        }
+        return oldValue;
+    }
+
+    // runs after the removed node is unhooked, so replacing its neighbours is safe
+    private void compactAfterRemoval(int index) {
+        Node<K, V> head = table[index];
+        if (head instanceof TreeNode && treeSizeAtMost((TreeNode<K, V>) head, UNTREEIFY_THRESHOLD)) {
+            table[index] = untreeify((TreeNode<K, V>) head);
+        }
+        if (size < shrinkThreshold) {
+            rehash(table.length >>> 1);
+        }
+    }
+
+    private static boolean treeSizeAtMost(TreeNode<?, ?> root, int count) {
+        TreeNode<?, ?> node = firstTreeNode(root);
+        for (int i = 0; i < count && node != null; i++) {
+            node = successor(node);
+        }
+        return node == null;
+    }
+
+    private static <K, V> TreeNode<K, V> findTreeNode(TreeNode<K, V> root, int hash, Object key) {
+        TreeNode<K, V> current = root;
+        while (current != null) {
+            if (current.hash == hash && Objects.equals(current.key, key)) {
+                return current;
+            }
+            int cmp = searchOrder(key, hash, current.key, current.hash);
+            if (cmp < 0) {
+                current = current.left;
+            } else if (cmp > 0) {
+                current = current.right;
+            } else {
+                // only identity is left to order them, which a lookup key cannot
+                // reproduce, so both subtrees may hold the key
+                TreeNode<K, V> found = current.right == null ? null : findTreeNode(current.right, hash, key);
+                if (found != null) {
+                    return found;
+                }
+                current = current.left;
             }
         }
         return null;
     }
 
     private TreeNode<K, V> removeFromTree(TreeNode<K, V> root, TreeNode<K, V> node) {
-        if (node.left == null && node.right == null) {
+        // a node with two children trades places with its successor first,
+        // so the node actually unlinked below has at most one child
+        if (node.left != null && node.right != null) {
+            TreeNode<K, V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            root = swapPositions(root, node, successor);
+        }
+
+        TreeNode<K, V> replacement = node.left != null ? node.left : node.right;
+
+        if (replacement != null) {
+            replacement.parent = node.parent;
             if (node.parent == null) {
-                return null;
+                root = replacement;
             } else if (node == node.parent.left) {
-                node.parent.left = null;
+                node.parent.left = replacement;
+            } else {
+                node.parent.right = replacement;
+            }
+            node.left = node.right = node.parent = null;
+            if (!node.red) {
+                root = balanceDeletion(root, replacement);
+            }
+        } else if (node.parent == null) {
+            return null;
+        } else {
+            if (!node.red) {
+                root = balanceDeletion(root, node);
+            }
+            TreeNode<K, V> parent = node.parent;
+            if (parent != null) {
+                if (node == parent.left) {
+                    parent.left = null;
+                } else if (node == parent.right) {
+                    parent.right = null;
+                }
+                node.parent = null;
+            }
+        }
+
+        if (root != null) {
+            root.red = false;
+        }
+        return root;
+    }
+
+    private static <K, V> TreeNode<K, V> swapPositions(TreeNode<K, V> root, TreeNode<K, V> p, TreeNode<K, V> s) {
+        boolean color = s.red;
+        s.red = p.red;
+        p.red = color;
+
+        TreeNode<K, V> sr = s.right;
+        TreeNode<K, V> pl = p.left;
+        TreeNode<K, V> pp = p.parent;
+
+        if (s == p.right) {
+            p.parent = s;
+            s.right = p;
+        } else {
+            TreeNode<K, V> sp = s.parent;
+            p.parent = sp;
+            if (s == sp.left) {
+                sp.left = p;
+            } else {
+                sp.right = p;
+            }
+            s.right = p.right;
+            s.right.parent = s;
+        }
+
+        p.left = null;
+        p.right = sr;
+        if (sr != null) {
+            sr.parent = p;
+        }
+        s.left = pl;
+        pl.parent = s;
+
+        s.parent = pp;
+        if (pp == null) {
+            root = s;
+        } else if (p == pp.left) {
+            pp.left = s;
+        } else {
+            pp.right = s;
+        }
+        return root;
+    }
+
+    private static <K, V> TreeNode<K, V> balanceDeletion(TreeNode<K, V> root, TreeNode<K, V> x) {
+        while (x != root && x != null && !x.red) {
+            TreeNode<K, V> xp = x.parent;
+            if (xp == null) {
+                break;
+            }
+
+            if (x == xp.left) {
+                TreeNode<K, V> sibling = xp.right;
+                if (sibling != null && sibling.red) {
+                    sibling.red = false;
+                    xp.red = true;
+                    root = rotateLeft(root, xp);
+                    sibling = xp.right;
+                }
+                if (sibling == null) {
+                    x = xp;
+                    continue;
+                }
+                boolean leftBlack = sibling.left == null || !sibling.left.red;
+                boolean rightBlack = sibling.right == null || !sibling.right.red;
+                if (leftBlack && rightBlack) {
+                    sibling.red = true;
+                    x = xp;
+                } else {
+                    if (rightBlack) {
+                        sibling.left.red = false;
+                        sibling.red = true;
+                        root = rotateRight(root, sibling);
+                        sibling = xp.right;
+                    }
+                    sibling.red = xp.red;
+                    xp.red = false;
+                    if (sibling.right != null) {
+                        sibling.right.red = false;
+                    }
+                    root = rotateLeft(root, xp);
+                    x = root;
+                }
+            } else {
+                TreeNode<K, V> sibling = xp.left;
+                if (sibling != null && sibling.red) {
+                    sibling.red = false;
+                    xp.red = true;
+                    root = rotateRight(root, xp);
+                    sibling = xp.left;
+                }
+                if (sibling == null) {
+                    x = xp;
+                    continue;
+                }
+                boolean leftBlack = sibling.left == null || !sibling.left.red;
+                boolean rightBlack = sibling.right == null || !sibling.right.red;
+                if (leftBlack && rightBlack) {
+                    sibling.red = true;
+                    x = xp;
+                } else {
+                    if (leftBlack) {
+                        sibling.right.red = false;
+                        sibling.red = true;
+                        root = rotateLeft(root, sibling);
+                        sibling = xp.left;
+                    }
+                    sibling.red = xp.red;
+                    xp.red = false;
+                    if (sibling.left != null) {
+                        sibling.left.red = false;
+                    }
+                    root = rotateRight(root, xp);
+                    x = root;
+                }
+            }
+        }
+        if (x != null) {
+            x.red = false;
+        }
+        return root;
+    }
+
+    /**
+     * Verifies the red-black properties and parent links of every tree bin.
+     * Intended for tests, walks the whole table.
+     */
+    boolean checkTreeInvariants() {
+        for (Node<K, V>[] tab : binTables()) {
+            for (Node<K, V> head : tab) {
+                if (head instanceof TreeNode) {
+                    TreeNode<K, V> root = (TreeNode<K, V>) head;
+                    if (root.parent != null || root.red || checkTree(root) < 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // returns the black height of the subtree, or -1 if it is broken
+    private int checkTree(TreeNode<K, V> node) {
+        if (node == null) return 1;
+
+        TreeNode<K, V> left = node.left;
+        TreeNode<K, V> right = node.right;
+        if (left != null && (left.parent != node || treeOrder(left.key, left.hash, node.key, node.hash) >= 0)) {
+            return -1;
+        }
+        if (right != null && (right.parent != node || treeOrder(right.key, right.hash, node.key, node.hash) <= 0)) {
+            return -1;
+        }
+        if (node.red && ((left != null && left.red) || (right != null && right.red))) {
+            return -1;
+        }
+
+        int leftHeight = checkTree(left);
+        int rightHeight = checkTree(right);
+        if (leftHeight < 0 || leftHeight != rightHeight) {
+            return -1;
+        }
+        return leftHeight + (node.red ? 0 : 1);
+    }
+
+    private void treeifyBin(int index) {
+        Node<K, V> head = table[index];
+        if (head == null) return;
+
+        TreeNode<K, V> root = null;
+        Node<K, V> current = head;
+
+        while (current != null) {
+            TreeNode<K, V> treeNode = replacementTreeNode(current, null);
+            root = insertIntoTree(root, treeNode);
+            current = current.next;
+        }
+
+        table[index] = root;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void resize() {
+        finishResize();
+        Node<K, V>[] oldTable = table;
+        int oldCapacity = oldTable.length;
+        if (oldCapacity >= MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        long start = STATS ? System.nanoTime() : 0;
+        Node<K, V>[] newTable = new Node[oldCapacity * 2];
+        if (incrementalResize) {
+            resizing = oldTable;
+            transferIndex = 0;
+            table = newTable;
+            threshold = thresholdFor(newTable.length);
+            shrinkThreshold = shrinkThresholdFor(newTable.length);
+            if (STATS) recordResize(start);
+            return;
+        }
+
+        // every node of bin i lands either in bin i or in bin i + oldCapacity,
+        // decided by the single hash bit that the doubled mask adds
+        for (int i = 0; i < oldCapacity; i++) {
+            Node<K, V> head = oldTable[i];
+            if (head == null) {
+                continue;
+            }
+            oldTable[i] = null;
+
+            if (head instanceof TreeNode) {
+                splitTree(newTable, (TreeNode<K, V>) head, i, oldCapacity);
+            } else {
+                splitList(newTable, head, i, oldCapacity);
+            }
+        }
+
+        table = newTable;
+        threshold = thresholdFor(newTable.length);
+        shrinkThreshold = shrinkThresholdFor(newTable.length);
+        if (STATS) recordResize(start);
+    }
+
+    // moves old bin i into the two new bins it splits into, as resize() does
+    private void transferBin(Node<K, V>[] old, int i) {
+        Node<K, V> head = old[i];
+        if (head == null) {
+            return;
+        }
+        old[i] = null;
+        if (head instanceof TreeNode) {
+            splitTree(table, (TreeNode<K, V>) head, i, old.length);
+        } else {
+            splitList(table, head, i, old.length);
+        }
+    }
+
+    // called by updates before they touch the bin of hash: moves that bin
+    // if it is still in the old table, then a few more in index order
+    private void helpResize(int hash) {
+        Node<K, V>[] old = resizing;
+        if (old == null) {
+            return;
+        }
+        long start = STATS ? System.nanoTime() : 0;
+        transferBin(old, hash & (old.length - 1));
+        int i = transferIndex;
+        int end = Math.min(old.length, i + RESIZE_SCAN_LIMIT);
+        for (int moved = 0; i < end && moved < RESIZE_STEP; i++) {
+            if (old[i] != null) {
+                transferBin(old, i);
+                moved++;
+            }
+        }
+        transferIndex = i;
+        if (i == old.length) {
+            resizing = null;
+        }
+        if (STATS) resizeNanos += System.nanoTime() - start;
+    }
+
+    private void finishResize() {
+        Node<K, V>[] old = resizing;
+        if (old == null) {
+            return;
+        }
+        long start = STATS ? System.nanoTime() : 0;
+        for (int i = transferIndex; i < old.length; i++) {
+            transferBin(old, i);
+        }
+        resizing = null;
+        if (STATS) resizeNanos += System.nanoTime() - start;
+    }
+
+    // whole-map reads walk the old bins a resize has not moved yet, then the
+    // new table; every node is in exactly one of them, and nothing is moved
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node<K, V>[][] binTables() {
+        Node<K, V>[] old = resizing;
+        return old == null ? new Node[][] {table} : new Node[][] {old, table};
+    }
+
+    // an old bin that still has entries is the only place its keys can be
+    private Node<K, V> binFor(int hash) {
+        Node<K, V>[] old = resizing;
+        if (old != null) {
+            Node<K, V> first = old[hash & (old.length - 1)];
+            if (first != null) {
+                return first;
+            }
+        }
+        return table[index(hash)];
+    }
+
+    /**
+     * In incremental mode a resize only allocates the doubled table. The old
+     * bins move over a few at a time as later insertions and removals come
+     * in, and lookups check the old table until their bin has moved, so no
+     * single put pays for walking the whole table. Whole-map operations such
+     * as iteration and {@link #statistics()} walk the old bins not moved yet
+     * together with the new table and never move anything themselves.
+     *
+     * <p>Unlike an incremental rehash that also advances on reads, {@code get}
+     * and other non-structural operations do not move bins: iterators rely on
+     * the layout staying put between structural modifications. A map that
+     * only serves reads after a resize therefore keeps the old table alive
+     * and pays one extra array load per lookup until the next writes finish
+     * the move; turning incremental mode off finishes it at once.
+     */
+    public void setIncrementalResize(boolean incremental) {
+        if (!incremental) {
+            finishResize();
+        }
+        incrementalResize = incremental;
+    }
+
+    /**
+     * Grows the table once so that {@code expectedSize} entries fit without
+     * any further resize.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize, loadFactor);
+        if (capacity > table.length) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Shrinks the table to the smallest power of two that still holds the
+     * current entries under the load factor.
+     */
+    public void trimToSize() {
+        int capacity = capacityFor(size, loadFactor);
+        if (capacity < table.length) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Halves the table if the entries still fit in half of it under the load
+     * factor, and returns whether it did.
+     */
+    public boolean shrink() {
+        int capacity = table.length >>> 1;
+        if (capacity == 0 || size > thresholdFor(capacity)) {
+            return false;
+        }
+        rehash(capacity);
+        return true;
+    }
+
+    /**
+     * Halves the table whenever a removal leaves fewer than
+     * {@code lowWaterMark * capacity} entries, but never below the capacity
+     * the map was created with. The mark must be below half the load factor
+     * so that a halved table does not grow straight back; 0 turns this off.
+     */
+    public void setAutoShrink(float lowWaterMark) {
+        if (!(lowWaterMark >= 0 && lowWaterMark < loadFactor / 2)) {
+            throw new IllegalArgumentException("Illegal low-water mark: " + lowWaterMark);
+        }
+        this.lowWaterMark = lowWaterMark;
+        shrinkThreshold = shrinkThresholdFor(table.length);
+    }
+
+    // grows the table once for a batch; bounded subclasses cap the estimate
+    void presizeForBatch(int incoming) {
+        ensureCapacity((int) Math.min((long) size + incoming, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Copies every entry of {@code other}, growing the table at most once.
+     * The source nodes' hashes are reused when both maps hash the same way.
+     */
+    @SuppressWarnings("unchecked")
+    public void putAll(CustomHashMap<? extends K, ? extends V> other) {
+        if (other == this || other.size == 0) {
+            return;
+        }
+        presizeForBatch(other.size);
+        // only read from, so viewing it as a map of K and V is safe
+        CustomHashMap<K, V> source = (CustomHashMap<K, V>) other;
+        boolean sameHash = source.seeded == seeded && source.seed0 == seed0 && source.seed1 == seed1;
+        if (source.resizing != null) {
+            putBins(source.resizing, sameHash);
+        }
+        putBins(source.table, sameHash);
+        finishBatch();
+    }
+
+    private void putBins(Node<K, V>[] bins, boolean sameHash) {
+        for (Node<K, V> head : bins) {
+            for (Node<K, V> node = firstInBin(head); node != null; node = nextInBin(node)) {
+                putBatched(sameHash ? node.hash : hash(node.key), node.key, node.value);
+            }
+        }
+    }
+
+    public void putAll(Map<? extends K, ? extends V> other) {
+        presizeForBatch(other.size());
+        for (Map.Entry<? extends K, ? extends V> entry : other.entrySet()) {
+            K key = entry.getKey();
+            putBatched(hash(key), key, entry.getValue());
+        }
+        finishBatch();
+    }
+
+    /** Puts {@code keys[i] -> values[i]} for every i; a later duplicate key wins. */
+    public void putAll(K[] keys, V[] values) {
+        checkBatch(keys, values);
+        presizeForBatch(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            putBatched(hash(keys[i]), keys[i], values[i]);
+        }
+        finishBatch();
+    }
+
+    /**
+     * Same as {@link #putAll(Object[], Object[])}, but batches of at least
+     * {@code parallelismThreshold} entries are inserted by the common
+     * fork-join pool. Keys are sorted by target bin and every task owns a
+     * disjoint run of bins, so tasks never touch the same bin. Subclasses
+     * that track their entries always insert sequentially.
+     */
+    public void putAll(long parallelismThreshold, K[] keys, V[] values) {
+        checkBatch(keys, values);
+        presizeForBatch(keys.length);
+        // treeifying a bin in a table smaller than this would resize it instead
+        if (keys.length < parallelismThreshold || getClass() != CustomHashMap.class
+                || table.length < MIN_TREEIFY_CAPACITY) {
+            putAll(keys, values);
+            return;
+        }
+        // tasks must not move bins under each other
+        finishResize();
+
+        int[] hashes = new int[keys.length];
+        Arrays.parallelSetAll(hashes, i -> hash(keys[i]));
+        long[] order = new long[keys.length];
+        Arrays.parallelSetAll(order, i -> (long) index(hashes[i]) << 32 | i);
+        Arrays.parallelSort(order);
+
+        int leafSize = Math.max(1, keys.length / Math.max(1, ForkJoinPool.getCommonPoolParallelism() << 2));
+        int added = ForkJoinPool.commonPool().invoke(new PutBatchTask(order, 0, order.length, leafSize, hashes, keys, values));
+        size += added;
+        modCount++;
+        if (size > threshold) {
+            resize();
+        }
+        if (floodSuspected) {
+            rehashWithSeed();
+        }
+    }
+
+    /**
+     * Returns the entries of {@code keys} that have a non-null value. Large
+     * batches are looked up in bin order, so the table is walked front to
+     * back instead of at random.
+     */
+    @SuppressWarnings("unchecked")
+    public CustomHashMap<K, V> getAll(Collection<? extends K> keys) {
+        Object[] array = keys.toArray();
+        Object[] values = new Object[array.length];
+        int found = lookupAll(array, values);
+        CustomHashMap<K, V> result = new CustomHashMap<>(found);
+        for (int i = 0; i < array.length; i++) {
+            if (values[i] != null) {
+                result.put((K) array[i], (V) values[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the value of {@code keys[i]} in {@code values[i]} and returns how
+     * many keys had a non-null value.
+     */
+    public int getAll(K[] keys, V[] values) {
+        checkBatch(keys, values);
+        return lookupAll(keys, values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int lookupAll(Object[] keys, Object[] values) {
+        int found = 0;
+        if (keys.length < GROUP_BY_BIN_THRESHOLD) {
+            for (int i = 0; i < keys.length; i++) {
+                if ((values[i] = get(keys[i])) != null) {
+                    found++;
+                }
+            }
+            return found;
+        }
+
+        long[] order = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (long) index(hash(keys[i])) << 32 | i;
+        }
+        Arrays.sort(order);
+        for (long entry : order) {
+            int i = (int) entry;
+            if ((values[i] = get(keys[i])) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /** Removes every key of {@code keys} and returns how many were present. */
+    public int removeAll(Collection<?> keys) {
+        int before = size;
+        for (Object key : keys) {
+            remove(key);
+        }
+        return before - size;
+    }
+
+    private static void checkBatch(Object[] keys, Object[] values) {
+        if (keys.length != values.length) {
+            throw new IllegalArgumentException(
+                    "Keys and values differ in length: " + keys.length + " != " + values.length);
+        }
+    }
+
+    // put() without the per-entry resize and flood checks; the table was presized
+    // for the batch, and callers may hold hashes computed before it started
+    private void putBatched(int hash, K key, V value) {
+        Node<K, V> existing = putNode(hash, key, value);
+        if (existing != null) {
+            replaceValue(existing, value);
+            return;
+        }
+        size++;
+        modCount++;
+        afterNodeInsertion();
+    }
+
+    // the resize is only needed when presizing stopped at the maximum capacity
+    private void finishBatch() {
+        if (size > threshold) {
+            resize();
+        }
+        if (floodSuspected) {
+            rehashWithSeed();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    final class PutBatchTask extends RecursiveTask<Integer> {
+        private final long[] order;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final int[] hashes;
+        private final K[] keys;
+        private final V[] values;
+
+        PutBatchTask(long[] order, int from, int to, int leafSize, int[] hashes, K[] keys, V[] values) {
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.hashes = hashes;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        @Override
+        protected Integer compute() {
+            int mid = to;
+            if (to - from > leafSize) {
+                // split on a bin boundary so that both halves own whole bins
+                mid = (from + to) >>> 1;
+                while (mid > from && mid < to && order[mid] >>> 32 == order[mid - 1] >>> 32) {
+                    mid++;
+                }
+            }
+            if (mid == to) {
+                int added = 0;
+                for (int j = from; j < to; j++) {
+                    int i = (int) order[j];
+                    Node<K, V> existing = putNode(hashes[i], keys[i], values[i]);
+                    if (existing != null) {
+                        existing.value = values[i];
+                    } else {
+                        added++;
+                    }
+                }
+                return added;
+            }
+            PutBatchTask left = new PutBatchTask(order, from, mid, leafSize, hashes, keys, values);
+            left.fork();
+            int right = new PutBatchTask(order, mid, to, leafSize, hashes, keys, values).compute();
+            return left.join() + right;
+        }
+    }
+
+    // moves every node into a table of arbitrary power-of-two capacity; unlike
+    // resize() several old bins may merge into one, so bins are normalised afterwards
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void rehash(int newCapacity) {
+        finishResize();
+        long start = STATS ? System.nanoTime() : 0;
+        Node<K, V>[] oldTable = table;
+        Node<K, V>[] newTable = new Node[newCapacity];
+        int mask = newCapacity - 1;
+
+        for (int i = 0; i < oldTable.length; i++) {
+            Node<K, V> head = oldTable[i];
+            if (head == null) {
+                continue;
+            }
+            oldTable[i] = null;
+
+            if (head instanceof TreeNode) {
+                TreeNode<K, V> current = firstTreeNode((TreeNode<K, V>) head);
+                while (current != null) {
+                    TreeNode<K, V> next = successor(current);
+                    int index = current.hash & mask;
+                    current.next = newTable[index];
+                    newTable[index] = current;
+                    current = next;
+                }
+            } else {
+                Node<K, V> current = head;
+                while (current != null) {
+                    Node<K, V> next = current.next;
+                    int index = current.hash & mask;
+                    current.next = newTable[index];
+                    newTable[index] = current;
+                    current = next;
+                }
+            }
+        }
+
+        for (int i = 0; i < newCapacity; i++) {
+            if (newTable[i] != null) {
+                newTable[i] = normalizeBin(newTable[i], newCapacity);
+            }
+        }
+
+        table = newTable;
+        threshold = thresholdFor(newCapacity);
+        shrinkThreshold = shrinkThresholdFor(newCapacity);
+        modCount++;
+        if (STATS) recordResize(start);
+    }
+
+    private void recordResize(long start) {
+        resizeCount++;
+        resizeNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Samples the map's counters and bin shape. Counters are plain fields and
+     * cost nothing to read; the bin shape walks the whole table once, so
+     * sample large maps sparingly. A pending incremental resize is left as it
+     * is and its bins not moved yet are counted in the old table. Hit, miss
+     * and resize counters are off by default and stay at zero; start the JVM
+     * with {@code -Dorg.example.collection.stats=true} to collect them.
+     */
+    public CustomHashMapStats statistics() {
+        int usedBins = 0;
+        int treeBins = 0;
+        int maxChainLength = 0;
+        for (Node<K, V>[] tab : binTables()) {
+            for (Node<K, V> head : tab) {
+                if (head == null) {
+                    continue;
+                }
+                usedBins++;
+                if (head instanceof TreeNode) {
+                    treeBins++;
+                }
+                int length = 0;
+                for (Node<K, V> node = firstInBin(head); node != null; node = nextInBin(node)) {
+                    length++;
+                }
+                maxChainLength = Math.max(maxChainLength, length);
+            }
+        }
+        return new CustomHashMapStats(size, table.length, loadFactor, hitCount, missCount,
+                usedBins, maxChainLength, treeBins, resizeCount, resizeNanos, seeded);
+    }
+
+    public void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        resizeCount = 0;
+        resizeNanos = 0;
+    }
+
+    /**
+     * Registers an MXBean named {@code org.example.collection:type=CustomHashMap,name=<name>}
+     * with the platform MBean server and returns its name; unregister it
+     * with the returned name once the map is discarded. Each read samples
+     * {@link #statistics()} from the JMX thread, so bin-shape figures are
+     * only reliable while the map is not being modified.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("org.example.collection:type=CustomHashMap,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new StatsMXBean(this), objectName);
+        return objectName;
+    }
+
+    private static final class StatsMXBean implements CustomHashMapMXBean {
+        private final CustomHashMap<?, ?> map;
+
+        StatsMXBean(CustomHashMap<?, ?> map) {
+            this.map = map;
+        }
+
+        public CustomHashMapStats getStatistics() { return map.statistics(); }
+        public int getSize() { return map.size; }
+        public int getCapacity() { return map.table.length; }
+        public long getHitCount() { return map.hitCount; }
+        public long getMissCount() { return map.missCount; }
+        public int getResizeCount() { return map.resizeCount; }
+        public long getResizeTimeNanos() { return map.resizeNanos; }
+        public void resetStatistics() { map.resetStatistics(); }
+    }
+
+    private Node<K, V> normalizeBin(Node<K, V> head, int capacity) {
+        int count = 0;
+        boolean hasTreeNodes = false;
+        for (Node<K, V> current = head; current != null; current = current.next) {
+            count++;
+            hasTreeNodes |= current instanceof TreeNode;
+        }
+
+        if (count >= TREEIFY_THRESHOLD && capacity >= MIN_TREEIFY_CAPACITY) {
+            TreeNode<K, V> chainHead = null, tail = null;
+            for (Node<K, V> current = head; current != null; current = current.next) {
+                TreeNode<K, V> treeNode = current instanceof TreeNode
+                        ? (TreeNode<K, V>) current
+                        : replacementTreeNode(current, null);
+                if (tail == null) {
+                    chainHead = treeNode;
+                } else {
+                    tail.next = treeNode;
+                }
+                tail = treeNode;
+            }
+            tail.next = null;
+            return treeifyChain(chainHead);
+        }
+
+        if (!hasTreeNodes) {
+            return head;
+        }
+        Node<K, V> newHead = null, tail = null;
+        for (Node<K, V> current = head; current != null; current = current.next) {
+            Node<K, V> node = current instanceof TreeNode
+                    ? replacementNode(current, null)
+                    : current;
+            if (tail == null) {
+                newHead = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+        tail.next = null;
+        return newHead;
+    }
+
+    private void splitList(Node<K, V>[] newTable, Node<K, V> head, int index, int bit) {
+        Node<K, V> loHead = null, loTail = null;
+        Node<K, V> hiHead = null, hiTail = null;
+        Node<K, V> current = head;
+
+        while (current != null) {
+            Node<K, V> next = current.next;
+            if ((current.hash & bit) == 0) {
+                if (loTail == null) {
+                    loHead = current;
+                } else {
+                    loTail.next = current;
+                }
+                loTail = current;
+            } else {
+                if (hiTail == null) {
+                    hiHead = current;
+                } else {
+                    hiTail.next = current;
+                }
+                hiTail = current;
+            }
+            current = next;
+        }
+
+        if (loTail != null) {
+            loTail.next = null;
+            newTable[index] = loHead;
+        }
+        if (hiTail != null) {
+            hiTail.next = null;
+            newTable[index + bit] = hiHead;
+        }
+    }
+
+    private void splitTree(Node<K, V>[] newTable, TreeNode<K, V> root, int index, int bit) {
+        TreeNode<K, V> loHead = null, loTail = null;
+        TreeNode<K, V> hiHead = null, hiTail = null;
+        int loCount = 0, hiCount = 0;
+
+        // the in-order walk only follows left/right/parent, so the nodes can be
+        // chained through next before the halves are rebuilt
+        for (TreeNode<K, V> current = firstTreeNode(root); current != null; current = successor(current)) {
+            if ((current.hash & bit) == 0) {
+                if (loTail == null) {
+                    loHead = current;
+                } else {
+                    loTail.next = current;
+                }
+                loTail = current;
+                loCount++;
+            } else {
+                if (hiTail == null) {
+                    hiHead = current;
+                } else {
+                    hiTail.next = current;
+                }
+                hiTail = current;
+                hiCount++;
+            }
+        }
+
+        if (loTail != null) {
+            loTail.next = null;
+            newTable[index] = loCount <= UNTREEIFY_THRESHOLD ? untreeifyChain(loHead) : treeifyChain(loHead);
+        }
+        if (hiTail != null) {
+            hiTail.next = null;
+            newTable[index + bit] = hiCount <= UNTREEIFY_THRESHOLD ? untreeifyChain(hiHead) : treeifyChain(hiHead);
+        }
+    }
+
+    private TreeNode<K, V> treeifyChain(TreeNode<K, V> head) {
+        TreeNode<K, V> root = null;
+        TreeNode<K, V> current = head;
+        while (current != null) {
+            TreeNode<K, V> next = (TreeNode<K, V>) current.next;
+            current.next = null;
+            current.left = current.right = current.parent = null;
+            root = insertIntoTree(root, current);
+            current = next;
+        }
+        return root;
+    }
+
+    private Node<K, V> untreeifyChain(TreeNode<K, V> head) {
+        Node<K, V> newHead = null, tail = null;
+        for (Node<K, V> current = head; current != null; current = current.next) {
+            Node<K, V> node = replacementNode(current, null);
+            if (tail == null) {
+                newHead = node;
             } else {
-                node.parent.right = null;
+                tail.next = node;
             }
-            return root;
-        } else if (node.left == null) {
-            if (node.parent == null) {
-                node.right.parent = null;
-                return node.right;
-            } else if (node == node.parent.left) {
-                node.parent.left = node.right;
+            tail = node;
+        }
+        return newHead;
+    }
+
+    private Node<K, V> untreeify(TreeNode<K, V> root) {
+        Node<K, V> newHead = null, tail = null;
+        for (TreeNode<K, V> current = firstTreeNode(root); current != null; current = successor(current)) {
+            Node<K, V> node = replacementNode(current, null);
+            if (tail == null) {
+                newHead = node;
             } else {
-                node.parent.right = node.right;
+                tail.next = node;
             }
-            node.right.parent = node.parent;
-            return root;
-        } else if (node.right == null) {
-            if (node.parent == null) {
-                node.left.parent = null;
-                return node.left;
-            } else if (node == node.parent.left) {
-                node.parent.left = node.left;
-            } else {
-                node.parent.right = node.left;
+            tail = node;
+        }
+        return newHead;
+    }
+
+    private static <K, V> TreeNode<K, V> firstTreeNode(TreeNode<K, V> root) {
+        TreeNode<K, V> current = root;
+        if (current != null) {
+            while (current.left != null) {
+                current = current.left;
             }
-            node.left.parent = node.parent;
-            return root;
-        } else {
-            TreeNode<K, V> successor = node.right;
-            while (successor.left != null) {
-                successor = successor.left;
+        }
+        return current;
+    }
+
+    private static <K, V> TreeNode<K, V> successor(TreeNode<K, V> node) {
+        if (node.right != null) {
+            return firstTreeNode(node.right);
+        }
+        TreeNode<K, V> child = node;
+        TreeNode<K, V> parent = node.parent;
+        while (parent != null && child == parent.right) {
+            child = parent;
+            parent = parent.parent;
+        }
+        return parent;
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        resizing = null;
+        if (size > 0) {
+            Arrays.fill(table, null);
+            size = 0;
+            modCount++;
+        }
+    }
+
+    int capacity() {
+        return table.length;
+    }
+
+    boolean isResizePending() {
+        return resizing != null;
+    }
+
+    /**
+     * Applies {@code action} to every entry, walking the bins directly without
+     * an iterator.
+     *
+     * @throws ConcurrentModificationException if the action changes the map structurally
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (Node<K, V>[] tab : binTables()) {
+            for (Node<K, V> head : tab) {
+                if (head instanceof TreeNode) {
+                    for (TreeNode<K, V> node = firstTreeNode((TreeNode<K, V>) head); node != null; node = successor(node)) {
+                        action.accept(node.key, node.value);
+                    }
+                } else {
+                    for (Node<K, V> node = head; node != null; node = node.next) {
+                        action.accept(node.key, node.value);
+                    }
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces every value with the result of {@code function}. Subclasses see
+     * each write as an update, exactly as if the value had been {@code put}.
+     *
+     * @throws ConcurrentModificationException if the function changes the map structurally
+     */
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        Objects.requireNonNull(function);
+        if (getClass() == CustomHashMap.class) {
+            int expectedModCount = modCount;
+            for (Node<K, V>[] tab : binTables()) {
+                for (Node<K, V> head : tab) {
+                    if (head instanceof TreeNode) {
+                        for (TreeNode<K, V> node = firstTreeNode((TreeNode<K, V>) head); node != null; node = successor(node)) {
+                            node.value = function.apply(node.key, node.value);
+                        }
+                    } else {
+                        for (Node<K, V> node = head; node != null; node = node.next) {
+                            node.value = function.apply(node.key, node.value);
+                        }
+                    }
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                }
+            }
+            return;
+        }
+        // update hooks may evict or expire entries and removals may rebuild bins,
+        // so the walk runs over a copy and looks every key up again
+        List<Node<K, V>> nodes = new ArrayList<>(size);
+        for (Node<K, V>[] tab : binTables()) {
+            for (Node<K, V> head : tab) {
+                if (head instanceof TreeNode) {
+                    for (TreeNode<K, V> node = firstTreeNode((TreeNode<K, V>) head); node != null; node = successor(node)) {
+                        nodes.add(node);
+                    }
+                } else {
+                    for (Node<K, V> node = head; node != null; node = node.next) {
+                        nodes.add(node);
+                    }
+                }
+            }
+        }
+        for (Node<K, V> copy : nodes) {
+            Node<K, V> node = getNode(copy.hash, copy.key);
+            if (node != null && isLive(node)) {
+                replaceValue(node, function.apply(node.key, node.value));
             }
+        }
+    }
+
+    public Set<K> keySet() {
+        Set<K> keys = keySet;
+        if (keys == null) {
+            keys = new KeySet();
+            keySet = keys;
+        }
+        return keys;
+    }
 
-            root = removeFromTree(root, successor);
+    public Collection<V> values() {
+        Collection<V> vals = values;
+        if (vals == null) {
+            vals = new Values();
+            values = vals;
+        }
+        return vals;
+    }
 
-            if (node.parent == null) {
-                root = successor;
-            } else if (node == node.parent.left) {
-                node.parent.left = successor;
-            } else {
-                node.parent.right = successor;
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entries = entrySet;
+        if (entries == null) {
+            entries = new EntrySet();
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    /**
+     * Sequential or parallel stream over the entries, split by table index ranges.
+     */
+    public Stream<Map.Entry<K, V>> entryStream() {
+        return StreamSupport.stream(entrySet().spliterator(), false);
+    }
+
+    private static <K, V> Node<K, V> firstInBin(Node<K, V> head) {
+        return head instanceof TreeNode ? firstTreeNode((TreeNode<K, V>) head) : head;
+    }
+
+    private static <K, V> Node<K, V> nextInBin(Node<K, V> node) {
+        return node instanceof TreeNode ? successor((TreeNode<K, V>) node) : node.next;
+    }
+
+    // bin i when the old bins of a pending resize come before the table
+    private static <K, V> Node<K, V> binAt(Node<K, V>[] old, Node<K, V>[] tab, int i) {
+        if (old == null) {
+            return tab[i];
+        }
+        return i < old.length ? old[i] : tab[i - old.length];
+    }
+
+    /**
+     * Splits the table into halves of its index range. The root spliterator
+     * binds to the table and size lazily, on first use; during an incremental
+     * resize the range numbers the old bins first and the new table after them.
+     */
+    abstract class HashSpliterator<T> implements Spliterator<T> {
+        int index;
+        int fence;
+        int est;
+        int expectedModCount;
+        Node<K, V> current;
+        Node<K, V>[] oldBins;
+        Node<K, V>[] bins;
+
+        HashSpliterator(int origin, int fence, int est, int expectedModCount) {
+            this.index = origin;
+            this.fence = fence;
+            this.est = est;
+            this.expectedModCount = expectedModCount;
+        }
+
+        final int getFence() {
+            int hi = fence;
+            if (hi < 0) {
+                est = size;
+                expectedModCount = modCount;
+                oldBins = resizing;
+                bins = table;
+                hi = fence = (oldBins == null ? 0 : oldBins.length) + bins.length;
+            }
+            return hi;
+        }
+
+        abstract T extract(Node<K, V> node);
+
+        abstract HashSpliterator<T> create(int origin, int fence, int est, int expectedModCount);
+
+        public final Spliterator<T> trySplit() {
+            int hi = getFence();
+            int lo = index;
+            int mid = (lo + hi) >>> 1;
+            if (lo >= mid || current != null) {
+                return null;
             }
+            index = mid;
+            est >>>= 1;
+            HashSpliterator<T> prefix = create(lo, mid, est, expectedModCount);
+            prefix.oldBins = oldBins;
+            prefix.bins = bins;
+            return prefix;
+        }
 
-            successor.left = node.left;
-            if (node.left != null) {
-                node.left.parent = successor;
+        public final boolean tryAdvance(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            while (current != null || index < hi) {
+                if (current == null) {
+                    current = firstInBin(binAt(oldBins, bins, index++));
+                } else {
+                    Node<K, V> node = current;
+                    current = nextInBin(node);
+                    action.accept(extract(node));
+                    if (modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    return true;
+                }
             }
+            return false;
+        }
 
-            successor.right = node.right;
-            if (node.right != null) {
-                node.right.parent = successor;
+        public final void forEachRemaining(Consumer<? super T> action) {
+            Objects.requireNonNull(action);
+            int hi = getFence();
+            Node<K, V> node = current;
+            current = null;
+            int i = index;
+            index = hi;
+            while (true) {
+                if (node == null) {
+                    if (i >= hi) {
+                        break;
+                    }
+                    node = firstInBin(binAt(oldBins, bins, i++));
+                } else {
+                    action.accept(extract(node));
+                    node = nextInBin(node);
+                }
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
             }
+        }
+
+        public final long estimateSize() {
+            getFence();
+            return est;
+        }
 
-            successor.parent = node.parent;
-            return root;
+        public int characteristics() {
+            return (fence < 0 || est == size ? Spliterator.SIZED : 0) | Spliterator.DISTINCT;
         }
     }
 
-    private void treeifyBin(int index) {
-        Node<K, V> head = table[index];
-        if (head == null) return;
+    final class KeySpliterator extends HashSpliterator<K> {
+        KeySpliterator(int origin, int fence, int est, int expectedModCount) {
+            super(origin, fence, est, expectedModCount);
+        }
 
-        TreeNode<K, V> root = null;
-        Node<K, V> current = head;
+        K extract(Node<K, V> node) { return node.key; }
 
-        while (current != null) {
-            TreeNode<K, V> treeNode = new TreeNode<>(current.hash, current.key, current.value, null);
-            root = insertIntoTree(root, treeNode);
-            current = current.next;
+        HashSpliterator<K> create(int origin, int fence, int est, int expectedModCount) {
+            return new KeySpliterator(origin, fence, est, expectedModCount);
         }
+    }
 
-        table[index] = root;
+    final class ValueSpliterator extends HashSpliterator<V> {
+        ValueSpliterator(int origin, int fence, int est, int expectedModCount) {
+            super(origin, fence, est, expectedModCount);
+        }
+
+        V extract(Node<K, V> node) { return node.value; }
+
+        HashSpliterator<V> create(int origin, int fence, int est, int expectedModCount) {
+            return new ValueSpliterator(origin, fence, est, expectedModCount);
+        }
+
+        public int characteristics() {
+            return fence < 0 || est == size ? Spliterator.SIZED : 0;
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    private void resize() {
-        Node<K, V>[] oldTable = table;
-        int newCapacity = oldTable.length * 2;
-        table = new Node[newCapacity];
-        int oldSize = size;
-        size = 0;
+    final class EntrySpliterator extends HashSpliterator<Map.Entry<K, V>> {
+        EntrySpliterator(int origin, int fence, int est, int expectedModCount) {
+            super(origin, fence, est, expectedModCount);
+        }
 
-        for (Node<K, V> head : oldTable) {
-            if (head != null) {
-                if (head instanceof TreeNode) {
-                    rehashTree((TreeNode<K, V>) head);
-                } else {
-                    Node<K, V> current = head;
-                    while (current != null) {
-                        put(current.key, current.value);
-                        current = current.next;
-                    }
+        Map.Entry<K, V> extract(Node<K, V> node) { return exposedEntry(node); }
+
+        HashSpliterator<Map.Entry<K, V>> create(int origin, int fence, int est, int expectedModCount) {
+            return new EntrySpliterator(origin, fence, est, expectedModCount);
+        }
+    }
+
+    /**
+     * Applies {@code action} to every entry, in parallel on the common
+     * fork-join pool when the map holds at least {@code parallelismThreshold}
+     * entries. The action must not modify the map.
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        reduce(parallelismThreshold, (key, value) -> {
+            action.accept(key, value);
+            return null;
+        }, (a, b) -> null);
+    }
+
+    /**
+     * Transforms every entry and combines the non-null results with
+     * {@code reducer}; returns {@code null} if there are none.
+     */
+    public <U> U reduce(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        Objects.requireNonNull(transformer);
+        Objects.requireNonNull(reducer);
+        int expectedModCount = modCount;
+        U result = null;
+        for (Node<K, V>[] tab : binTables()) {
+            U u;
+            if (size < parallelismThreshold || tab.length < 2) {
+                u = reduceBins(tab, 0, tab.length, transformer, reducer);
+            } else {
+                u = ForkJoinPool.commonPool().invoke(
+                        new ReduceTask<>(tab, 0, tab.length, leafSize(tab), transformer, reducer));
+            }
+            if (u != null) {
+                result = result == null ? u : reducer.apply(result, u);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return result;
+    }
+
+    /**
+     * Returns a non-null result of {@code searchFunction} for some entry, or
+     * {@code null}. Once any task finds a result the others stop early.
+     */
+    public <U> U search(long parallelismThreshold, BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        Objects.requireNonNull(searchFunction);
+        int expectedModCount = modCount;
+        AtomicReference<U> result = new AtomicReference<>();
+        for (Node<K, V>[] tab : binTables()) {
+            if (result.get() != null) {
+                break;
+            }
+            if (size < parallelismThreshold || tab.length < 2) {
+                searchBins(tab, 0, tab.length, searchFunction, result);
+            } else {
+                ForkJoinPool.commonPool().invoke(new SearchTask<>(tab, 0, tab.length, leafSize(tab), searchFunction, result));
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return result.get();
+    }
+
+    // about four leaves per worker keeps the pool busy when bins are uneven
+    private static int leafSize(Node<?, ?>[] tab) {
+        int leaves = ForkJoinPool.getCommonPoolParallelism() << 2;
+        return Math.max(1, tab.length / Math.max(1, leaves));
+    }
+
+    private static <K, V, U> U reduceBins(Node<K, V>[] tab, int from, int to,
+                                                               BiFunction<? super K, ? super V, ? extends U> transformer,
+                                                               BiFunction<? super U, ? super U, ? extends U> reducer) {
+        U result = null;
+        for (int i = from; i < to; i++) {
+            for (Node<K, V> node = firstInBin(tab[i]); node != null; node = nextInBin(node)) {
+                U u = transformer.apply(node.key, node.value);
+                if (u != null) {
+                    result = result == null ? u : reducer.apply(result, u);
                 }
             }
         }
+        return result;
+    }
 
-        size = oldSize;
+    private static <K, V, U> void searchBins(Node<K, V>[] tab, int from, int to,
+                                                                  BiFunction<? super K, ? super V, ? extends U> searchFunction,
+                                                                  AtomicReference<U> result) {
+        for (int i = from; i < to && result.get() == null; i++) {
+            for (Node<K, V> node = firstInBin(tab[i]); node != null; node = nextInBin(node)) {
+                U u = searchFunction.apply(node.key, node.value);
+                if (u != null) {
+                    result.compareAndSet(null, u);
+                    return;
+                }
+            }
+        }
     }
 
-    private void rehashTree(TreeNode<K, V> node) {
-        if (node == null) return;
+    @SuppressWarnings("serial")
+    static final class ReduceTask<K, V, U> extends RecursiveTask<U> {
+        private final Node<K, V>[] tab;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final BiFunction<? super K, ? super V, ? extends U> transformer;
+        private final BiFunction<? super U, ? super U, ? extends U> reducer;
+
+        ReduceTask(Node<K, V>[] tab, int from, int to, int leafSize,
+                   BiFunction<? super K, ? super V, ? extends U> transformer,
+                   BiFunction<? super U, ? super U, ? extends U> reducer) {
+            this.tab = tab;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.transformer = transformer;
+            this.reducer = reducer;
+        }
 
-        put(node.key, node.value);
-        rehashTree(node.left);
-        rehashTree(node.right);
+        @Override
+        protected U compute() {
+            if (to - from <= leafSize) {
+                return reduceBins(tab, from, to, transformer, reducer);
+            }
+            int mid = (from + to) >>> 1;
+            ReduceTask<K, V, U> left = new ReduceTask<>(tab, from, mid, leafSize, transformer, reducer);
+            left.fork();
+            U right = new ReduceTask<>(tab, mid, to, leafSize, transformer, reducer).compute();
+            U leftResult = left.join();
+            if (leftResult == null) return right;
+            if (right == null) return leftResult;
+            return reducer.apply(leftResult, right);
+        }
     }
 
+    @SuppressWarnings("serial")
+    static final class SearchTask<K, V, U> extends RecursiveTask<Void> {
+        private final Node<K, V>[] tab;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final BiFunction<? super K, ? super V, ? extends U> searchFunction;
+        private final AtomicReference<U> result;
+
+        SearchTask(Node<K, V>[] tab, int from, int to, int leafSize,
+                   BiFunction<? super K, ? super V, ? extends U> searchFunction, AtomicReference<U> result) {
+            this.tab = tab;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.searchFunction = searchFunction;
+            this.result = result;
+        }
 
-    public int size() {
-        return size;
+        @Override
+        protected Void compute() {
+            if (result.get() != null) {
+                return null;
+            }
+            if (to - from <= leafSize) {
+                searchBins(tab, from, to, searchFunction, result);
+                return null;
+            }
+            int mid = (from + to) >>> 1;
+            SearchTask<K, V, U> left = new SearchTask<>(tab, from, mid, leafSize, searchFunction, result);
+            left.fork();
+            new SearchTask<>(tab, mid, to, leafSize, searchFunction, result).compute();
+            left.join();
+            return null;
+        }
     }
 
+    /**
+     * Walks the table bin by bin; list bins follow {@code next}, tree bins are
+     * visited in key order through parent links, so no stack is allocated.
+     */
+    abstract class HashIterator {
+        Node<K, V> next;
+        Node<K, V> current;
+        int expectedModCount;
+        int index;
+        // bins are numbered as in HashSpliterator, old bins of a pending resize first
+        final Node<K, V>[] oldBins = resizing;
+        final Node<K, V>[] bins = table;
+        final int binCount = (oldBins == null ? 0 : oldBins.length) + bins.length;
+
+        HashIterator() {
+            expectedModCount = modCount;
+            advanceToBin();
+        }
 
-    public boolean isEmpty() {
-        return size == 0;
+        private void advanceToBin() {
+            while (next == null && index < binCount) {
+                next = firstInBin(binAt(oldBins, bins, index++));
+            }
+        }
+
+        public final boolean hasNext() {
+            return next != null;
+        }
+
+        final Node<K, V> nextNode() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            Node<K, V> node = next;
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            current = node;
+            next = nextInBin(node);
+            if (next == null) {
+                advanceToBin();
+            }
+            return node;
+        }
+
+        public final void remove() {
+            Node<K, V> node = current;
+            if (node == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            current = null;
+            // keeps the bin of the next node intact
+            removeKey(node.key, false);
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends HashIterator implements Iterator<K> {
+        public K next() { return nextNode().key; }
+    }
+
+    final class ValueIterator extends HashIterator implements Iterator<V> {
+        public V next() { return nextNode().value; }
+    }
+
+    final class EntryIterator extends HashIterator implements Iterator<Map.Entry<K, V>> {
+        public Map.Entry<K, V> next() { return exposedEntry(nextNode()); }
+    }
+
+    // entries of subclasses write through replaceValue() so the update hooks run
+    Map.Entry<K, V> exposedEntry(Node<K, V> node) {
+        return getClass() == CustomHashMap.class ? node : new MapEntry(node);
+    }
+
+    final class MapEntry implements Map.Entry<K, V> {
+        final Node<K, V> node;
+
+        MapEntry(Node<K, V> node) {
+            this.node = node;
+        }
+
+        public K getKey() { return node.key; }
+        public V getValue() { return node.value; }
+        public String toString() { return node.toString(); }
+        public int hashCode() { return node.hashCode(); }
+        public boolean equals(Object o) { return node.equals(o); }
+
+        public V setValue(V value) {
+            if (!isLive(node) || getNode(node.hash, node.key) != node) {
+                return node.setValue(value);
+            }
+            return replaceValue(node, value);
+        }
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public int size() { return size; }
+        public void clear() { CustomHashMap.this.clear(); }
+        public Iterator<K> iterator() { return new KeyIterator(); }
+        public Spliterator<K> spliterator() { return new KeySpliterator(0, -1, 0, 0); }
+
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        public boolean remove(Object o) {
+            if (!containsKey(o)) {
+                return false;
+            }
+            CustomHashMap.this.remove(o);
+            return true;
+        }
+
+        public void forEach(Consumer<? super K> action) {
+            Objects.requireNonNull(action);
+            CustomHashMap.this.forEach((key, value) -> action.accept(key));
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public int size() { return size; }
+        public void clear() { CustomHashMap.this.clear(); }
+        public Iterator<V> iterator() { return new ValueIterator(); }
+        public Spliterator<V> spliterator() { return new ValueSpliterator(0, -1, 0, 0); }
+
+        public void forEach(Consumer<? super V> action) {
+            Objects.requireNonNull(action);
+            CustomHashMap.this.forEach((key, value) -> action.accept(value));
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public int size() { return size; }
+        public void clear() { CustomHashMap.this.clear(); }
+        public Iterator<Map.Entry<K, V>> iterator() { return new EntryIterator(); }
+        public Spliterator<Map.Entry<K, V>> spliterator() { return new EntrySpliterator(0, -1, 0, 0); }
+
+        // entries a subclass considers gone are not in the view
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Node<K, V> node = getNode(entry.getKey());
+            return node != null && isLive(node) && node.equals(entry);
+        }
+
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            CustomHashMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+    }
+
+    void forEachNode(Consumer<Node<K, V>> action) {
+        for (Node<K, V>[] tab : binTables()) {
+            for (Node<K, V> head : tab) {
+                if (head instanceof TreeNode) {
+                    for (TreeNode<K, V> node = firstTreeNode((TreeNode<K, V>) head); node != null; node = successor(node)) {
+                        action.accept(node);
+                    }
+                } else {
+                    for (Node<K, V> node = head; node != null; node = node.next) {
+                        action.accept(node);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the current entries into an immutable {@link FrozenCustomHashMap}
+     * sized exactly for them. The copy hashes keys the same way as this map,
+     * so stored hashes are reused and seeded hashing carries over. This map
+     * stays usable and later changes to it are not seen by the copy.
+     */
+    public FrozenCustomHashMap<K, V> freeze() {
+        int[] hashes = new int[size];
+        Object[] keys = new Object[size];
+        Object[] values = new Object[size];
+        int count = 0;
+        for (Node<K, V>[] tab : binTables()) {
+            for (Node<K, V> head : tab) {
+                for (Node<K, V> node = firstInBin(head); node != null; node = nextInBin(node)) {
+                    if (isLive(node)) {
+                        hashes[count] = node.hash;
+                        keys[count] = node.key;
+                        values[count] = node.value;
+                        count++;
+                    }
+                }
+            }
+        }
+        return new FrozenCustomHashMap<>(count, hashes, keys, values, seeded, seed0, seed1);
+    }
+
+    /**
+     * Writes all entries to {@code path} in the format read by {@link #load} and
+     * {@link MappedCustomHashMap#open}. The file is written next to the target
+     * and moved into place, so readers never observe a half-written snapshot.
+     */
+    public void snapshot(Path path, ByteSerializer<K> keySerializer, ByteSerializer<V> valueSerializer) throws IOException {
+        CustomHashMapSnapshot.write(this, path, keySerializer, valueSerializer);
+    }
+
+    /**
+     * Rebuilds a map from a snapshot, presized so loading never resizes.
+     */
+    public static <K, V> CustomHashMap<K, V> load(
+            Path path, ByteSerializer<K> keySerializer, ByteSerializer<V> valueSerializer) throws IOException {
+        try (MappedCustomHashMap<K, V> mapped = MappedCustomHashMap.open(path, keySerializer, valueSerializer)) {
+            CustomHashMap<K, V> map = new CustomHashMap<>(mapped.size());
+            mapped.forEach(map::put);
+            return map;
+        }
     }
 
 
@@ -471,6 +2776,17 @@ public class CustomHashMap<K extends Comparable<K>, V> {
         System.out.println("Table length: " + table.length);
         System.out.println("Load factor: " + ((float) size / table.length));
 
+        Node<K, V>[] old = resizing;
+        if (old != null) {
+            for (int i = 0; i < old.length; i++) {
+                Node<K, V> node = old[i];
+                if (node != null) {
+                    System.out.println("Old bucket " + i + ": " +
+                            (node instanceof TreeNode ? "TREE" : "LIST") +
+                            " - " + bucketToString(node));
+                }
+            }
+        }
         for (int i = 0; i < table.length; i++) {
             Node<K, V> node = table[i];
             if (node != null) {
@@ -487,9 +2803,8 @@ public class CustomHashMap<K extends Comparable<K>, V> {
         StringBuilder sb = new StringBuilder("{");
         boolean first = true;
 
-        for (int i = 0; i < table.length; i++) {
-            Node<K, V> head = table[i];
-            if (head != null) {
+        for (Node<K, V>[] tab : binTables()) {
+            for (Node<K, V> head : tab) {
                 if (head instanceof TreeNode) {
                     StringBuilder treeBuilder = new StringBuilder();
                     treeToString((TreeNode<K, V>) head, treeBuilder);
@@ -0,0 +1,25 @@
+package org.example.collection;
+
+/**
+ * JMX view of a {@link CustomHashMap}, registered with
+ * {@link CustomHashMap#registerMBean(String)}. The plain counters are cheap
+ * to poll; {@link #getStatistics()} walks the table.
+ */
+public interface CustomHashMapMXBean {
+
+    CustomHashMapStats getStatistics();
+
+    int getSize();
+
+    int getCapacity();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    int getResizeCount();
+
+    long getResizeTimeNanos();
+
+    void resetStatistics();
+}
@@ -0,0 +1,225 @@
+package org.example.collection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot file format shared by {@link CustomHashMap#snapshot} and
+ * {@link MappedCustomHashMap}.
+ *
+ * <pre>
+ * header  magic, version, tableLength, entryCount (ints), dataLength, checksum (longs)
+ * table   tableLength ints: offset of the bucket's first record in data plus one, 0 if empty
+ * data    records [hash][next][keyLength][valueLength][key bytes][value bytes]
+ * </pre>
+ *
+ * All numbers are big-endian. Records of one bucket are stored next to each
+ * other, {@code next} is the offset of the following record plus one, and a
+ * length of -1 stands for a {@code null} key or value. The hash is computed
+ * from the serialized key, 0 for a {@code null} key. The checksum is the
+ * CRC32 of everything after the header.
+ */
+final class CustomHashMapSnapshot {
+
+    static final int MAGIC = 0x43484D53;
+    static final int VERSION = 2;
+
+    static final int HEADER_BYTES = 32;
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int TABLE_LENGTH_OFFSET = 8;
+    static final int ENTRY_COUNT_OFFSET = 12;
+    static final int DATA_LENGTH_OFFSET = 16;
+    static final int CHECKSUM_OFFSET = 24;
+
+    static final int HASH = 0;
+    static final int NEXT = 4;
+    static final int KEY_LENGTH = 8;
+    static final int VALUE_LENGTH = 12;
+    static final int RECORD_HEADER_BYTES = 16;
+    static final int NULL_LENGTH = -1;
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private CustomHashMapSnapshot() {
+    }
+
+    // the file stores a hash of the key bytes rather than of hashCode(), which
+    // may differ between JVMs, so the file can be looked up from any process
+    static int hash(ByteBuffer keyBytes, int keyLength) {
+        return keyBytes == null ? 0 : ByteHash.hash(keyBytes, 0, keyLength);
+    }
+
+    private static int tableLengthFor(int size) {
+        int capacity = (int) Math.min(Math.ceil(size / (double) LOAD_FACTOR), 1 << 30);
+        return capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> void write(CustomHashMap<K, V> map, Path path,
+                                                   ByteSerializer<K> keySerializer,
+                                                   ByteSerializer<V> valueSerializer) throws IOException {
+        int size = map.size();
+        Object[] keys = new Object[size];
+        Object[] values = new Object[size];
+        int[] count = new int[1];
+        map.forEachNode(node -> {
+            int i = count[0]++;
+            keys[i] = node.key;
+            values[i] = node.value;
+        });
+
+        int[] hashes = new int[size];
+        int[] keyLengths = new int[size];
+        int[] valueLengths = new int[size];
+        long dataLength = 0;
+        ByteBuffer keyBytes = ByteBuffer.allocate(64);
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == null) {
+                keyLengths[i] = NULL_LENGTH;
+                hashes[i] = hash(null, NULL_LENGTH);
+            } else {
+                int keyLength = keyLengths[i] = keySerializer.size((K) keys[i]);
+                if (keyBytes.capacity() < keyLength) {
+                    keyBytes = ByteBuffer.allocate(Math.max(keyLength, keyBytes.capacity() * 2));
+                }
+                keyBytes.clear();
+                writeChecked(keySerializer, (K) keys[i], keyBytes, keyLength);
+                hashes[i] = hash(keyBytes, keyLength);
+            }
+            valueLengths[i] = values[i] == null ? NULL_LENGTH : valueSerializer.size((V) values[i]);
+            dataLength += RECORD_HEADER_BYTES + Math.max(keyLengths[i], 0) + Math.max(valueLengths[i], 0);
+        }
+
+        // group the entries by bucket with a counting sort
+        int tableLength = tableLengthFor(size);
+        int mask = tableLength - 1;
+        int[] bucketStart = new int[tableLength + 1];
+        for (int i = 0; i < size; i++) {
+            bucketStart[(hashes[i] & mask) + 1]++;
+        }
+        for (int b = 0; b < tableLength; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] order = new int[size];
+        int[] fill = bucketStart.clone();
+        for (int i = 0; i < size; i++) {
+            order[fill[hashes[i] & mask]++] = i;
+        }
+
+        long fileLength = HEADER_BYTES + (long) tableLength * Integer.BYTES + dataLength;
+        if (fileLength > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + fileLength + " bytes exceeds the 2 GB mapping limit");
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ChunkWriter out = new ChunkWriter(channel, HEADER_BYTES);
+
+                int offset = 0;
+                for (int b = 0; b < tableLength; b++) {
+                    out.ensure(Integer.BYTES);
+                    out.buffer.putInt(bucketStart[b] == bucketStart[b + 1] ? 0 : offset + 1);
+                    for (int j = bucketStart[b]; j < bucketStart[b + 1]; j++) {
+                        int i = order[j];
+                        offset += RECORD_HEADER_BYTES + Math.max(keyLengths[i], 0) + Math.max(valueLengths[i], 0);
+                    }
+                }
+
+                offset = 0;
+                for (int j = 0; j < size; j++) {
+                    int i = order[j];
+                    int recordSize = RECORD_HEADER_BYTES + Math.max(keyLengths[i], 0) + Math.max(valueLengths[i], 0);
+                    boolean lastInBucket = j + 1 == size || (hashes[order[j + 1]] & mask) != (hashes[i] & mask);
+
+                    out.ensure(recordSize);
+                    ByteBuffer buffer = out.buffer;
+                    buffer.putInt(hashes[i]);
+                    buffer.putInt(lastInBucket ? 0 : offset + recordSize + 1);
+                    buffer.putInt(keyLengths[i]);
+                    buffer.putInt(valueLengths[i]);
+                    if (keys[i] != null) {
+                        writeChecked(keySerializer, (K) keys[i], buffer, keyLengths[i]);
+                    }
+                    if (values[i] != null) {
+                        writeChecked(valueSerializer, (V) values[i], buffer, valueLengths[i]);
+                    }
+                    offset += recordSize;
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC_OFFSET, MAGIC);
+                header.putInt(VERSION_OFFSET, VERSION);
+                header.putInt(TABLE_LENGTH_OFFSET, tableLength);
+                header.putInt(ENTRY_COUNT_OFFSET, size);
+                header.putLong(DATA_LENGTH_OFFSET, dataLength);
+                header.putLong(CHECKSUM_OFFSET, out.crc.getValue());
+                channel.write(header, 0);
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            // a failed write must not leave a partial file behind
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private static <T> void writeChecked(ByteSerializer<T> serializer, T value, ByteBuffer buffer, int length) {
+        int start = buffer.position();
+        serializer.write(value, buffer);
+        if (buffer.position() - start != length) {
+            throw new IllegalStateException("Serializer wrote " + (buffer.position() - start) + " bytes, declared " + length);
+        }
+    }
+
+    private static final class ChunkWriter {
+        private final FileChannel channel;
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private long position;
+
+        ChunkWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocate(bytes);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.collection;
+
+/**
+ * Point-in-time statistics of a {@link CustomHashMap}, taken by
+ * {@link CustomHashMap#statistics()}. Chain length counts the entries of one
+ * non-empty bin, whether it is a list or a tree.
+ */
+public final class CustomHashMapStats {
+
+    private final int size;
+    private final int capacity;
+    private final float loadFactor;
+    private final long hitCount;
+    private final long missCount;
+    private final int usedBins;
+    private final int maxChainLength;
+    private final int treeifiedBins;
+    private final int resizeCount;
+    private final long resizeTimeNanos;
+    private final boolean seededHashing;
+
+    CustomHashMapStats(int size, int capacity, float loadFactor, long hitCount, long missCount,
+                       int usedBins, int maxChainLength, int treeifiedBins,
+                       int resizeCount, long resizeTimeNanos, boolean seededHashing) {
+        this.size = size;
+        this.capacity = capacity;
+        this.loadFactor = loadFactor;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.usedBins = usedBins;
+        this.maxChainLength = maxChainLength;
+        this.treeifiedBins = treeifiedBins;
+        this.resizeCount = resizeCount;
+        this.resizeTimeNanos = resizeTimeNanos;
+        this.seededHashing = seededHashing;
+    }
+
+    public int getSize() { return size; }
+    public int getCapacity() { return capacity; }
+    /** The configured load factor that triggers a resize. */
+    public float getLoadFactor() { return loadFactor; }
+    /** Entries per table slot right now. */
+    public double getLoad() { return capacity == 0 ? 0 : (double) size / capacity; }
+    public long getHitCount() { return hitCount; }
+    public long getMissCount() { return missCount; }
+
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public int getUsedBins() { return usedBins; }
+    public double getAverageChainLength() { return usedBins == 0 ? 0 : (double) size / usedBins; }
+    public int getMaxChainLength() { return maxChainLength; }
+    public int getTreeifiedBins() { return treeifiedBins; }
+    public int getResizeCount() { return resizeCount; }
+    public long getResizeTimeNanos() { return resizeTimeNanos; }
+    public boolean isSeededHashing() { return seededHashing; }
+
+    @Override
+    public String toString() {
+        return "CustomHashMapStats{size=" + size
+                + ", capacity=" + capacity
+                + ", load=" + String.format("%.3f", getLoad())
+                + ", hits=" + hitCount
+                + ", misses=" + missCount
+                + ", avgChain=" + String.format("%.3f", getAverageChainLength())
+                + ", maxChain=" + maxChainLength
+                + ", treeBins=" + treeifiedBins
+                + ", resizes=" + resizeCount
+                + ", resizeNanos=" + resizeTimeNanos
+                + ", seeded=" + seededHashing
+                + '}';
+    }
+}
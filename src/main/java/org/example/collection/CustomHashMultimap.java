@@ -0,0 +1,241 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMap.LinkedNode;
+import org.example.collection.CustomHashMap.Node;
+import org.example.collection.CustomHashMap.TreeNode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Multimap that keeps the values of each key, in insertion order, in a
+ * plain array held by the key's {@link CustomHashMap} node, with the number
+ * of values in the node's int slot. A key costs one node and one array
+ * instead of a node, a list object and the list's array, and
+ * {@link #put} finds or adds its key in one bin traversal.
+ *
+ * <p>Values may repeat and may be {@code null}. A key is present exactly
+ * while it has at least one value. Not thread-safe.
+ */
+public class CustomHashMultimap<K, V> {
+
+    private final Groups<K> groups = new Groups<>();
+    private int size;
+
+    public CustomHashMultimap() {
+    }
+
+    public CustomHashMultimap(int expectedKeys) {
+        groups.ensureCapacity(expectedKeys);
+    }
+
+    /** Adds {@code value} to the values of {@code key}; always returns {@code true}. */
+    public boolean put(K key, V value) {
+        groups.pendingValue = value;
+        Node<K, Object[]> node = groups.putIfAbsentNode(key, null);
+        groups.pendingValue = null;
+        if (node != null) {
+            LinkedNode<K, Object[]> group = (LinkedNode<K, Object[]>) node;
+            Object[] values = group.value;
+            int count = valueCount(group);
+            if (count == values.length) {
+                values = group.value = Arrays.copyOf(values, count + (count >> 1) + 1);
+            }
+            values[count] = value;
+            setValueCount(group, count + 1);
+        }
+        size++;
+        return true;
+    }
+
+    /** A copy of the values of {@code key}, empty if it has none. */
+    @SuppressWarnings("unchecked")
+    public List<V> get(Object key) {
+        LinkedNode<K, Object[]> group = group(key);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        return (List<V>) Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(group.value, valueCount(group))));
+    }
+
+    /** Passes the values of {@code key} to {@code action} without copying them. */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Object key, Consumer<? super V> action) {
+        Objects.requireNonNull(action);
+        LinkedNode<K, Object[]> group = group(key);
+        if (group != null) {
+            Object[] values = group.value;
+            for (int i = 0, count = valueCount(group); i < count; i++) {
+                action.accept((V) values[i]);
+            }
+        }
+    }
+
+    /** Number of values of {@code key}. */
+    public int count(Object key) {
+        LinkedNode<K, Object[]> group = group(key);
+        return group == null ? 0 : valueCount(group);
+    }
+
+    public boolean containsKey(Object key) {
+        return groups.containsKey(key);
+    }
+
+    public boolean containsEntry(Object key, Object value) {
+        LinkedNode<K, Object[]> group = group(key);
+        return group != null && indexOf(group, value) >= 0;
+    }
+
+    /** Removes one occurrence of {@code value} from the values of {@code key}. */
+    public boolean remove(Object key, Object value) {
+        LinkedNode<K, Object[]> group = group(key);
+        int index = group == null ? -1 : indexOf(group, value);
+        if (index < 0) {
+            return false;
+        }
+        int count = valueCount(group) - 1;
+        if (count == 0) {
+            groups.remove(key);
+        } else {
+            Object[] values = group.value;
+            System.arraycopy(values, index + 1, values, index, count - index);
+            values[count] = null;
+            setValueCount(group, count);
+        }
+        size--;
+        return true;
+    }
+
+    /** Removes {@code key} and returns the values it had. */
+    @SuppressWarnings("unchecked")
+    public List<V> removeAll(Object key) {
+        LinkedNode<K, Object[]> group = group(key);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        groups.remove(key);
+        size -= valueCount(group);
+        return (List<V>) Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(group.value, valueCount(group))));
+    }
+
+    /** Total number of values over all keys. */
+    public int size() {
+        return size;
+    }
+
+    public int keyCount() {
+        return groups.size();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        groups.clear();
+        size = 0;
+    }
+
+    /** The keys that have values; a read-only view. */
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(groups.keySet());
+    }
+
+    /** Passes every key and value pair to {@code action}, the values of a key in insertion order. */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        groups.forEachNode(node -> {
+            LinkedNode<K, Object[]> group = (LinkedNode<K, Object[]>) node;
+            Object[] values = group.value;
+            for (int i = 0, count = valueCount(group); i < count; i++) {
+                action.accept(group.key, (V) values[i]);
+            }
+        });
+    }
+
+    /** Shrinks the array of every key to the number of values it holds. */
+    public void trimToSize() {
+        groups.forEachNode(node -> {
+            LinkedNode<K, Object[]> group = (LinkedNode<K, Object[]>) node;
+            if (group.value.length > valueCount(group)) {
+                group.value = Arrays.copyOf(group.value, valueCount(group));
+            }
+        });
+        groups.trimToSize();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        groups.forEachNode(node -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            int count = valueCount((LinkedNode<K, Object[]>) node);
+            sb.append(node.key).append('=').append(Arrays.toString(Arrays.copyOf(node.value, count)));
+        });
+        return sb.append('}').toString();
+    }
+
+    private LinkedNode<K, Object[]> group(Object key) {
+        return (LinkedNode<K, Object[]>) groups.getNode(key);
+    }
+
+    private static int indexOf(LinkedNode<?, Object[]> group, Object value) {
+        Object[] values = group.value;
+        for (int i = 0, count = valueCount(group); i < count; i++) {
+            if (Objects.equals(values[i], value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // every node is a LinkedNode holding the value array, and its int slot the count
+    private static int valueCount(LinkedNode<?, ?> group) {
+        return group.intSlot;
+    }
+
+    private static void setValueCount(LinkedNode<?, ?> group, int count) {
+        group.intSlot = count;
+    }
+
+    private static final class Groups<K> extends CustomHashMap<K, Object[]> {
+        // first value of the key the current insertion adds
+        Object pendingValue;
+
+        @Override
+        Node<K, Object[]> newNode(int hash, K key, Object[] value, Node<K, Object[]> next) {
+            LinkedNode<K, Object[]> node = new LinkedNode<>(hash, key, new Object[] {pendingValue}, next);
+            setValueCount(node, 1);
+            return node;
+        }
+
+        @Override
+        TreeNode<K, Object[]> newTreeNode(int hash, K key, Object[] value, Node<K, Object[]> next) {
+            TreeNode<K, Object[]> node = new TreeNode<>(hash, key, new Object[] {pendingValue}, next);
+            setValueCount(node, 1);
+            return node;
+        }
+
+        @Override
+        Node<K, Object[]> replacementNode(Node<K, Object[]> p, Node<K, Object[]> next) {
+            LinkedNode<K, Object[]> node = new LinkedNode<>(p.hash, p.key, p.value, next);
+            setValueCount(node, valueCount((LinkedNode<K, Object[]>) p));
+            return node;
+        }
+
+        @Override
+        TreeNode<K, Object[]> replacementTreeNode(Node<K, Object[]> p, Node<K, Object[]> next) {
+            TreeNode<K, Object[]> node = new TreeNode<>(p.hash, p.key, p.value, next);
+            setValueCount(node, valueCount((LinkedNode<K, Object[]>) p));
+            return node;
+        }
+    }
+}
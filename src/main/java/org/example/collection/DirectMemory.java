@@ -0,0 +1,45 @@
+package org.example.collection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+final class DirectMemory {
+
+    // sun.misc.Unsafe.invokeCleaner is the only way to free a direct or mapped
+    // buffer eagerly on Java 17 without the incubating Foreign Memory API
+    private static final MethodHandle INVOKE_CLEANER = lookupCleaner();
+
+    private DirectMemory() {
+    }
+
+    private static MethodHandle lookupCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Releases the memory of a direct buffer that is not a slice or duplicate.
+     * The buffer must not be touched afterwards.
+     */
+    static void free(ByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect() && INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invoke(buffer);
+            } catch (Throwable ignored) {
+                // the garbage collector will release the buffer instead
+            }
+        }
+    }
+}
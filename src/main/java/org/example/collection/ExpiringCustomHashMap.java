@@ -0,0 +1,204 @@
+package org.example.collection;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link CustomHashMap} whose entries expire a fixed time after they were
+ * written or last read. Every entry sits in a {@link TimerWheel} bucket
+ * through its node links, so scheduling costs O(1) and expired entries are
+ * found without scanning the table.
+ *
+ * <p>An expired entry is invisible to {@link #get}, {@link #containsKey}
+ * and the compute methods as soon as its deadline passes. It is physically
+ * removed on the next put, on {@link #cleanUp()} or by a task started with
+ * {@link #scheduleCleanUp}; until then it still counts in {@link #size()}
+ * and shows up in iteration.
+ *
+ * <p>Entries put with an explicit time to live keep that deadline even in
+ * {@link ExpiryPolicy#AFTER_ACCESS} mode. Not thread-safe.
+ */
+public class ExpiringCustomHashMap<K, V> extends CustomHashMap<K, V> {
+
+    public enum ExpiryPolicy {
+        AFTER_WRITE,
+        AFTER_ACCESS
+    }
+
+    // keeps now + ttl far away from overflow
+    private static final long MAXIMUM_TTL_NANOS = Long.MAX_VALUE >>> 2;
+
+    private final long defaultTtlNanos;
+    private final ExpiryPolicy policy;
+    private final LongSupplier ticker;
+    private final long origin;
+    private final TimerWheel<K, V> wheel;
+    private final Consumer<LinkedNode<K, V>> expirer = this::expire;
+
+    private long pendingTtlNanos;
+    private boolean pendingFixed;
+    private long expiredCount;
+
+    public ExpiringCustomHashMap(Duration defaultTtl, ExpiryPolicy policy) {
+        this(defaultTtl, policy, System::nanoTime);
+    }
+
+    ExpiringCustomHashMap(Duration defaultTtl, ExpiryPolicy policy, LongSupplier ticker) {
+        this.defaultTtlNanos = toNanos(defaultTtl);
+        this.policy = Objects.requireNonNull(policy);
+        this.ticker = ticker;
+        this.origin = ticker.getAsLong();
+        this.wheel = new TimerWheel<>(0);
+        this.pendingTtlNanos = defaultTtlNanos;
+    }
+
+    private static long toNanos(Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Illegal time to live: " + ttl);
+        }
+        return ttl.compareTo(Duration.ofNanos(MAXIMUM_TTL_NANOS)) > 0 ? MAXIMUM_TTL_NANOS : ttl.toNanos();
+    }
+
+    private long now() {
+        return ticker.getAsLong() - origin;
+    }
+
+    /**
+     * Puts an entry that expires {@code ttl} after this write, whatever the
+     * default time to live and policy are.
+     */
+    public V put(K key, V value, Duration ttl) {
+        pendingTtlNanos = toNanos(ttl);
+        pendingFixed = true;
+        try {
+            return super.put(key, value);
+        } finally {
+            pendingTtlNanos = defaultTtlNanos;
+            pendingFixed = false;
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        LinkedNode<K, V> node = (LinkedNode<K, V>) getNode(key);
+        if (node == null) {
+            return null;
+        }
+        if (!isLive(node)) {
+            return null;
+        }
+        afterNodeAccess(node);
+        return node.value;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        wheel.clear();
+    }
+
+    /** Removes every entry whose deadline has passed. */
+    public void cleanUp() {
+        wheel.advance(now(), expirer);
+    }
+
+    /**
+     * Runs {@link #cleanUp()} on {@code scheduler} every {@code period}. The
+     * task locks this map, so other threads must synchronize on it too.
+     */
+    public ScheduledFuture<?> scheduleCleanUp(ScheduledExecutorService scheduler, Duration period) {
+        long nanos = period.toNanos();
+        return scheduler.scheduleAtFixedRate(() -> {
+            synchronized (this) {
+                cleanUp();
+            }
+        }, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long expiredCount() {
+        return expiredCount;
+    }
+
+    public ExpiryPolicy policy() {
+        return policy;
+    }
+
+    private void expire(LinkedNode<K, V> node) {
+        remove(node.key);
+        expiredCount++;
+    }
+
+    // node hooks
+
+    @Override
+    Node<K, V> newNode(int hash, K key, V value, Node<K, V> next) {
+        LinkedNode<K, V> node = new LinkedNode<>(hash, key, value, next);
+        scheduleWrite(node);
+        return node;
+    }
+
+    @Override
+    TreeNode<K, V> newTreeNode(int hash, K key, V value, Node<K, V> next) {
+        TreeNode<K, V> node = new TreeNode<>(hash, key, value, next);
+        scheduleWrite(node);
+        return node;
+    }
+
+    @Override
+    Node<K, V> replacementNode(Node<K, V> p, Node<K, V> next) {
+        LinkedNode<K, V> node = new LinkedNode<>(p.hash, p.key, p.value, next);
+        wheel.replace((LinkedNode<K, V>) p, node);
+        return node;
+    }
+
+    @Override
+    TreeNode<K, V> replacementTreeNode(Node<K, V> p, Node<K, V> next) {
+        TreeNode<K, V> node = new TreeNode<>(p.hash, p.key, p.value, next);
+        wheel.replace((LinkedNode<K, V>) p, node);
+        return node;
+    }
+
+    // every read hit of a live entry, including getOrDefault, putIfAbsent and computeIfAbsent
+    @Override
+    void afterNodeAccess(Node<K, V> p) {
+        LinkedNode<K, V> node = (LinkedNode<K, V>) p;
+        if (policy == ExpiryPolicy.AFTER_ACCESS && !node.fixedExpiry) {
+            TimerWheel.setExpiresAt(node, now() + defaultTtlNanos);
+            wheel.reschedule(node);
+        }
+    }
+
+    @Override
+    void afterNodeUpdate(Node<K, V> p, V oldValue) {
+        LinkedNode<K, V> node = (LinkedNode<K, V>) p;
+        wheel.deschedule(node);
+        scheduleWrite(node);
+        cleanUp();
+    }
+
+    @Override
+    void afterNodeInsertion() {
+        cleanUp();
+    }
+
+    @Override
+    void afterNodeRemoval(Node<K, V> p) {
+        wheel.deschedule((LinkedNode<K, V>) p);
+    }
+
+    @Override
+    boolean isLive(Node<K, V> p) {
+        return TimerWheel.expiresAt((LinkedNode<K, V>) p) - now() > 0;
+    }
+
+    private void scheduleWrite(LinkedNode<K, V> node) {
+        TimerWheel.setExpiresAt(node, now() + pendingTtlNanos);
+        node.fixedExpiry = pendingFixed;
+        wheel.schedule(node);
+    }
+}
@@ -0,0 +1,452 @@
+package org.example.collection;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Open-addressing map in the style of Swiss tables. Keys and values live side
+ * by side in one array with no node per entry, and every slot has a control
+ * byte holding 7 bits of the key's hash or an empty/deleted marker. Control
+ * bytes are packed eight to a {@code long}, so a probe compares a whole group
+ * of slots at once with a few word operations (SWAR) and touches the entry
+ * array only on a hash match. A lookup for a missing key usually reads one
+ * control word and nothing else, and a hit finds the value on the cache line
+ * of its key.
+ *
+ * <p>A drop-in alternative to {@link CustomHashMap} wherever a {@link Map} is
+ * expected; null keys and values are allowed. Removal leaves a tombstone
+ * unless the group still has an empty slot, and tombstones are cleared by
+ * the next rehash. Not thread-safe.
+ */
+public class FlatCustomHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int GROUP_SIZE = 8;
+    private static final int GROUP_SHIFT = 3;
+    // the entry array holds two references per slot
+    private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    private static final byte EMPTY = (byte) 0x80;
+    private static final byte DELETED = (byte) 0xFE;
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+    private static final long ALL_EMPTY = 0x8080808080808080L;
+
+    // one control word per group of eight slots, slot i in byte i % 8
+    private long[] control;
+    // key of slot i at 2 * i, its value right after it
+    private Object[] entries;
+    private int capacity;
+    private int groupMask;
+    // inserts left before an empty slot would have to be taken beyond 3/4 load
+    private int growthLeft;
+    private int size;
+    private int modCount;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    public FlatCustomHashMap() {
+        this(0);
+    }
+
+    /**
+     * Creates a map that holds {@code expectedSize} entries without growing.
+     */
+    public FlatCustomHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long capacity = (long) Math.ceil(expectedSize * 4 / 3.0);
+        if (capacity >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        if (capacity <= GROUP_SIZE) return GROUP_SIZE;
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+
+    // with only eight slots per group a 7/8 load, as in 16-wide Swiss tables,
+    // leaves a third of the groups without an empty slot and lengthens misses
+    private static int maxLoad(int capacity) {
+        return capacity - capacity / 4;
+    }
+
+    private void allocate(int capacity) {
+        control = new long[capacity >>> GROUP_SHIFT];
+        Arrays.fill(control, ALL_EMPTY);
+        entries = new Object[capacity * 2];
+        this.capacity = capacity;
+        groupMask = control.length - 1;
+        growthLeft = maxLoad(capacity) - size;
+    }
+
+    static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+
+    // bytes of the group equal to h2; a byte above a true match may show up
+    // as a false positive, which the key comparison filters out
+    private static long match(long group, int h2) {
+        long x = group ^ (LSBS * h2);
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    private static long matchEmpty(long group) {
+        return group & ~(group << 6) & MSBS;
+    }
+
+    private static long matchEmptyOrDeleted(long group) {
+        return group & MSBS;
+    }
+
+    private static int lowestByte(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+
+    private int findSlot(Object key) {
+        int hash = hash(key);
+        int h2 = hash & 0x7F;
+        long[] control = this.control;
+        Object[] entries = this.entries;
+        int mask = groupMask;
+        // triangular steps visit every group once when the count is a power of two
+        for (int g = (hash >>> 7) & mask, step = 1; ; g = (g + step++) & mask) {
+            long group = control[g];
+            for (long m = match(group, h2); m != 0; m &= m - 1) {
+                int slot = (g << GROUP_SHIFT) + lowestByte(m);
+                Object k = entries[slot << 1];
+                if (k == key || (k != null && k.equals(key))) {
+                    return slot;
+                }
+            }
+            if (matchEmpty(group) != 0) {
+                return -1;
+            }
+        }
+    }
+
+    // first empty or deleted slot on the probe sequence of hash
+    private int findInsertSlot(int hash) {
+        long[] control = this.control;
+        int mask = groupMask;
+        for (int g = (hash >>> 7) & mask, step = 1; ; g = (g + step++) & mask) {
+            long m = matchEmptyOrDeleted(control[g]);
+            if (m != 0) {
+                return (g << GROUP_SHIFT) + lowestByte(m);
+            }
+        }
+    }
+
+    private byte controlAt(int slot) {
+        return (byte) (control[slot >>> GROUP_SHIFT] >>> ((slot & 7) << 3));
+    }
+
+    private void setControl(int slot, byte value) {
+        int shift = (slot & 7) << 3;
+        int g = slot >>> GROUP_SHIFT;
+        control[g] = (control[g] & ~(0xFFL << shift)) | ((value & 0xFFL) << shift);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int slot = findSlot(key);
+        return slot < 0 ? null : (V) entries[(slot << 1) + 1];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        int slot = findSlot(key);
+        return slot < 0 ? defaultValue : (V) entries[(slot << 1) + 1];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findSlot(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (controlAt(slot) >= 0 && Objects.equals(entries[(slot << 1) + 1], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            V oldValue = (V) entries[(slot << 1) + 1];
+            entries[(slot << 1) + 1] = value;
+            return oldValue;
+        }
+        insert(hash(key), key, value);
+        return null;
+    }
+
+    private void insert(int hash, K key, V value) {
+        int slot = findInsertSlot(hash);
+        if (growthLeft == 0 && controlAt(slot) == EMPTY) {
+            rehashForInsert();
+            slot = findInsertSlot(hash);
+        }
+        if (controlAt(slot) == EMPTY) {
+            growthLeft--;
+        }
+        setControl(slot, (byte) (hash & 0x7F));
+        entries[slot << 1] = key;
+        entries[(slot << 1) + 1] = value;
+        size++;
+        modCount++;
+    }
+
+    // out of empty slots: grow if the map is really that full, otherwise the
+    // tombstones are what used them up and a rehash in place clears them
+    private void rehashForInsert() {
+        if (size >= maxLoad(capacity) / 2) {
+            if (capacity >= MAXIMUM_CAPACITY) {
+                throw new IllegalStateException("Map is full: " + size);
+            }
+            rehash(capacity * 2);
+        } else {
+            rehash(capacity);
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldControl = control;
+        Object[] oldEntries = entries;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if ((byte) (oldControl[slot >>> GROUP_SHIFT] >>> ((slot & 7) << 3)) >= 0) {
+                Object key = oldEntries[slot << 1];
+                int hash = hash(key);
+                int target = findInsertSlot(hash);
+                setControl(target, (byte) (hash & 0x7F));
+                entries[target << 1] = key;
+                entries[(target << 1) + 1] = oldEntries[(slot << 1) + 1];
+            }
+        }
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V oldValue = (V) entries[(slot << 1) + 1];
+        removeAt(slot);
+        return oldValue;
+    }
+
+    // a group that still has an empty slot never let a probe pass it, so the
+    // slot can go back to empty; otherwise later keys may sit behind it
+    private void removeAt(int slot) {
+        if (matchEmpty(control[slot >>> GROUP_SHIFT]) != 0) {
+            setControl(slot, EMPTY);
+            growthLeft++;
+        } else {
+            setControl(slot, DELETED);
+        }
+        entries[slot << 1] = null;
+        entries[(slot << 1) + 1] = null;
+        size--;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0 || growthLeft < maxLoad(capacity)) {
+            Arrays.fill(control, ALL_EMPTY);
+            Arrays.fill(entries, null);
+            size = 0;
+            growthLeft = maxLoad(capacity);
+            modCount++;
+        }
+    }
+
+    /**
+     * Grows the table once so that {@code expectedSize} entries fit without
+     * any further rehash.
+     */
+    public void ensureCapacity(int expectedSize) {
+        int newCapacity = capacityFor(expectedSize);
+        if (newCapacity > capacity) {
+            rehash(newCapacity);
+        }
+    }
+
+    /**
+     * Shrinks the table to the smallest capacity that holds the current
+     * entries, dropping every tombstone on the way.
+     */
+    public void trimToSize() {
+        int newCapacity = capacityFor(size);
+        if (newCapacity < capacity || growthLeft < maxLoad(capacity) - size) {
+            rehash(Math.min(newCapacity, capacity));
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (controlAt(slot) >= 0) {
+                action.accept((K) entries[slot << 1], (V) entries[(slot << 1) + 1]);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    final class Entry implements Map.Entry<K, V> {
+        private final K key;
+        private V value;
+        private final int slot;
+
+        Entry(int slot) {
+            this.slot = slot;
+            this.key = castKey(entries[slot << 1]);
+            this.value = castValue(entries[(slot << 1) + 1]);
+        }
+
+        public K getKey() { return key; }
+        public V getValue() { return value; }
+        public String toString() { return key + "=" + value; }
+
+        // writes through while the slot still holds this key
+        public V setValue(V newValue) {
+            V oldValue = value;
+            value = newValue;
+            if (controlAt(slot) >= 0 && entries[slot << 1] == key) {
+                entries[(slot << 1) + 1] = newValue;
+            }
+            return oldValue;
+        }
+
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            return o instanceof Map.Entry
+                    && Objects.equals(key, ((Map.Entry<?, ?>) o).getKey())
+                    && Objects.equals(value, ((Map.Entry<?, ?>) o).getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K castKey(Object key) {
+        return (K) key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V castValue(Object value) {
+        return (V) value;
+    }
+
+    final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int next;
+        private int current = -1;
+        private int expectedModCount = modCount;
+
+        EntryIterator() {
+            advance(0);
+        }
+
+        private void advance(int from) {
+            next = from;
+            while (next < capacity && controlAt(next) < 0) {
+                next++;
+            }
+        }
+
+        public boolean hasNext() {
+            return next < capacity;
+        }
+
+        public Map.Entry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next >= capacity) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            advance(next + 1);
+            return new Entry(current);
+        }
+
+        // entries never move on removal, so the cursor stays valid
+        public void remove() {
+            if (current < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeAt(current);
+            current = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public int size() { return size; }
+        public void clear() { FlatCustomHashMap.this.clear(); }
+        public Iterator<Map.Entry<K, V>> iterator() { return new EntryIterator(); }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            int slot = findSlot(entry.getKey());
+            return slot >= 0 && Objects.equals(entries[(slot << 1) + 1], entry.getValue());
+        }
+
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            removeAt(findSlot(((Map.Entry<?, ?>) o).getKey()));
+            return true;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.collection;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch of 4-bit counters used by {@link CustomCache} to estimate
+ * how often a key was seen recently. Each {@code long} holds sixteen
+ * counters; a key maps to one counter in each of four rows. Once the number
+ * of increments reaches ten times the table width every counter is halved,
+ * so old popularity fades out.
+ */
+final class FrequencySketch {
+
+    private static final int[] SEEDS = {0x97CB3127, 0xC2B2AE35, 0x85EBCA6B, 0x27D4EB2F};
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long ONE_MASK = 0x1111_1111_1111_1111L;
+    private static final int MAXIMUM_WIDTH = 1 << 24;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(long expectedSize) {
+        int width = (int) Math.min(Math.max(expectedSize, 8), MAXIMUM_WIDTH);
+        width = Integer.highestOneBit(width - 1) << 1;
+        table = new long[width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    int frequency(int hash) {
+        int frequency = 15;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int h = rehash(hash, i);
+            int shift = (h >>> 28) << 2;
+            int count = (int) ((table[h & mask] >>> shift) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int h = rehash(hash, i);
+            int index = h & mask;
+            int shift = (h >>> 28) << 2;
+            long counter = 0xFL << shift;
+            if ((table[index] & counter) != counter) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions - (odd >>> 2)) >>> 1;
+    }
+
+    void clear() {
+        Arrays.fill(table, 0L);
+        additions = 0;
+    }
+
+    private static int rehash(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+}
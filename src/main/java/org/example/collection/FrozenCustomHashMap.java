@@ -0,0 +1,194 @@
+package org.example.collection;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Immutable map made by {@link CustomHashMap#freeze()}. Entries are sorted by
+ * bucket into flat arrays: a bucket is a run of consecutive slots, found
+ * through an offset table with about one bucket per entry, and a lookup
+ * scans that run comparing stored hashes before keys. There are no nodes,
+ * no next pointers and no tree bins, and the arrays are sized exactly for
+ * the entries.
+ *
+ * <p>The entries are reached only through final fields, so a reference handed
+ * to other threads by any means publishes the whole map safely and reads
+ * need no locking. Every mutator throws {@link UnsupportedOperationException}.
+ */
+public final class FrozenCustomHashMap<K, V> extends AbstractMap<K, V> {
+
+    private final int size;
+    private final int shift;
+    // bucket b holds slots offsets[b] until offsets[b + 1]
+    private final int[] offsets;
+    private final int[] hashes;
+    // key of slot i at 2 * i, its value right after it
+    private final Object[] entries;
+    private final boolean seeded;
+    private final long seed0;
+    private final long seed1;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    FrozenCustomHashMap(int size, int[] hashes, Object[] keys, Object[] values,
+                        boolean seeded, long seed0, long seed1) {
+        this.size = size;
+        this.seeded = seeded;
+        this.seed0 = seed0;
+        this.seed1 = seed1;
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1)));
+        this.shift = 32 - bits;
+
+        // counting sort by bucket
+        int[] offsets = new int[(1 << bits) + 1];
+        for (int i = 0; i < size; i++) {
+            offsets[bucket(hashes[i], shift) + 1]++;
+        }
+        for (int b = 1; b < offsets.length; b++) {
+            offsets[b] += offsets[b - 1];
+        }
+        int[] next = new int[1 << bits];
+        System.arraycopy(offsets, 0, next, 0, next.length);
+        int[] sortedHashes = new int[size];
+        Object[] entries = new Object[size * 2];
+        for (int i = 0; i < size; i++) {
+            int slot = next[bucket(hashes[i], shift)]++;
+            sortedHashes[slot] = hashes[i];
+            entries[slot << 1] = keys[i];
+            entries[(slot << 1) + 1] = values[i];
+        }
+        this.offsets = offsets;
+        this.hashes = sortedHashes;
+        this.entries = entries;
+    }
+
+    // the top bits after a multiply, so keys whose hashes differ only high up still spread
+    private static int bucket(int hash, int shift) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+
+    private int slotOf(Object key) {
+        int hash = CustomHashMap.hash(key, seeded, seed0, seed1);
+        int b = bucket(hash, shift);
+        int[] hashes = this.hashes;
+        Object[] entries = this.entries;
+        for (int slot = offsets[b], end = offsets[b + 1]; slot < end; slot++) {
+            if (hashes[slot] == hash) {
+                Object k = entries[slot << 1];
+                if (k == key || (k != null && k.equals(key))) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int slot = slotOf(key);
+        return slot < 0 ? null : (V) entries[(slot << 1) + 1];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        int slot = slotOf(key);
+        return slot < 0 ? defaultValue : (V) entries[(slot << 1) + 1];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return slotOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        for (int slot = 0; slot < size; slot++) {
+            action.accept((K) entries[slot << 1], (V) entries[(slot << 1) + 1]);
+        }
+    }
+
+    @Override
+    public V put(K key, V value) { throw uoe(); }
+    @Override
+    public V remove(Object key) { throw uoe(); }
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) { throw uoe(); }
+    @Override
+    public void clear() { throw uoe(); }
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) { throw uoe(); }
+    @Override
+    public V putIfAbsent(K key, V value) { throw uoe(); }
+    @Override
+    public boolean remove(Object key, Object value) { throw uoe(); }
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) { throw uoe(); }
+    @Override
+    public V replace(K key, V value) { throw uoe(); }
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) { throw uoe(); }
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) { throw uoe(); }
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) { throw uoe(); }
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) { throw uoe(); }
+
+    private static UnsupportedOperationException uoe() {
+        return new UnsupportedOperationException("FrozenCustomHashMap is immutable");
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public int size() { return size; }
+
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @SuppressWarnings("unchecked")
+                public Map.Entry<K, V> next() {
+                    if (next >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    int slot = next++;
+                    return new SimpleImmutableEntry<>((K) entries[slot << 1], (V) entries[(slot << 1) + 1]);
+                }
+            };
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            int slot = slotOf(entry.getKey());
+            return slot >= 0 && Objects.equals(entries[(slot << 1) + 1], entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.example.collection;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@code int} keys to {@code int} values, kept in two
+ * parallel arrays with linear probing, so entries cost no allocation and
+ * keys are never boxed. Key {@code 0} marks a free slot and is stored aside.
+ * Missing keys read as the no-entry value.
+ */
+public class IntIntMap {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final int noEntryValue;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int threshold;
+    private int assigned;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntMap() {
+        this(0, 0);
+    }
+
+    public IntIntMap(int expectedSize) {
+        this(expectedSize, 0);
+    }
+
+    /**
+     * @param noEntryValue value returned by {@code get}, {@code put} and
+     *                     {@code remove} when the key is not in the map
+     */
+    public IntIntMap(int expectedSize, int noEntryValue) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        this.noEntryValue = noEntryValue;
+        this.zeroValue = noEntryValue;
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long capacity = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (capacity >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        return Math.max(INITIAL_CAPACITY, Integer.highestOneBit((int) capacity - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        threshold = Math.min(capacity - 1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private int indexOf(int key) {
+        int[] keys = this.keys;
+        int mask = this.mask;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) return i;
+            if (k == 0) return -1;
+        }
+    }
+
+    public int get(int key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : noEntryValue;
+        }
+        int index = indexOf(key);
+        return index < 0 ? noEntryValue : values[index];
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    public boolean containsKey(int key) {
+        return key == 0 ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    public int put(int key, int value) {
+        if (key == 0) {
+            int oldValue = hasZeroKey ? zeroValue : noEntryValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return oldValue;
+        }
+
+        int[] keys = this.keys;
+        int mask = this.mask;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                int oldValue = values[i];
+                values[i] = value;
+                return oldValue;
+            }
+            if (k == 0) {
+                keys[i] = key;
+                values[i] = value;
+                if (++assigned >= threshold) {
+                    rehash(keys.length * 2);
+                }
+                return noEntryValue;
+            }
+        }
+    }
+
+    public int remove(int key) {
+        if (key == 0) {
+            int oldValue = hasZeroKey ? zeroValue : noEntryValue;
+            hasZeroKey = false;
+            zeroValue = noEntryValue;
+            return oldValue;
+        }
+
+        int index = indexOf(key);
+        if (index < 0) {
+            return noEntryValue;
+        }
+        int oldValue = values[index];
+        shiftKeys(index);
+        assigned--;
+        return oldValue;
+    }
+
+    // backward-shift deletion: pulls later entries of the probe run into the
+    // hole so lookups never need tombstones
+    private void shiftKeys(int pos) {
+        int[] keys = this.keys;
+        int mask = this.mask;
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            int k;
+            while (true) {
+                if ((k = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    return;
+                }
+                int home = slot(k, mask);
+                if (last <= pos ? (last >= home || home > pos) : (last >= home && home > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        if (keys.length >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map is full: " + size());
+        }
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(newCapacity);
+
+        int[] keys = this.keys;
+        int mask = this.mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int k = oldKeys[j];
+            if (k != 0) {
+                int i = slot(k, mask);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return assigned + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        assigned = 0;
+        hasZeroKey = false;
+        zeroValue = noEntryValue;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+
+        if (hasZeroKey) {
+            sb.append(0).append("=").append(zeroValue);
+            first = false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                if (!first) sb.append(", ");
+                sb.append(keys[i]).append("=").append(values[i]);
+                first = false;
+            }
+        }
+
+        sb.append("}");
+        return sb.toString();
+    }
+}
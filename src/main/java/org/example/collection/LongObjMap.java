@@ -0,0 +1,219 @@
+package org.example.collection;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@code long} keys to object values, kept in two
+ * parallel arrays with linear probing, so entries cost no allocation and
+ * keys are never boxed. Key {@code 0} marks a free slot and is stored aside.
+ * Missing keys read as {@code null}.
+ */
+public class LongObjMap<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int threshold;
+    private int assigned;
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public LongObjMap() {
+        this(0);
+    }
+
+    public LongObjMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long capacity = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (capacity >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        return Math.max(INITIAL_CAPACITY, Integer.highestOneBit((int) capacity - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = Math.min(capacity - 1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int indexOf(long key) {
+        long[] keys = this.keys;
+        int mask = this.mask;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return i;
+            if (k == 0) return -1;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : null;
+        }
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : (V) values[index];
+    }
+
+    public boolean containsKey(long key) {
+        return key == 0 ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (key == 0) {
+            V oldValue = hasZeroKey ? zeroValue : null;
+            hasZeroKey = true;
+            zeroValue = value;
+            return oldValue;
+        }
+
+        long[] keys = this.keys;
+        int mask = this.mask;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                V oldValue = (V) values[i];
+                values[i] = value;
+                return oldValue;
+            }
+            if (k == 0) {
+                keys[i] = key;
+                values[i] = value;
+                if (++assigned >= threshold) {
+                    rehash(keys.length * 2);
+                }
+                return null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0) {
+            V oldValue = hasZeroKey ? zeroValue : null;
+            hasZeroKey = false;
+            zeroValue = null;
+            return oldValue;
+        }
+
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V oldValue = (V) values[index];
+        shiftKeys(index);
+        assigned--;
+        return oldValue;
+    }
+
+    // backward-shift deletion: pulls later entries of the probe run into the
+    // hole so lookups never need tombstones
+    private void shiftKeys(int pos) {
+        long[] keys = this.keys;
+        int mask = this.mask;
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            long k;
+            while (true) {
+                if ((k = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    values[last] = null;
+                    return;
+                }
+                int home = slot(k, mask);
+                if (last <= pos ? (last >= home || home > pos) : (last >= home && home > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        if (keys.length >= MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map is full: " + size());
+        }
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+
+        long[] keys = this.keys;
+        int mask = this.mask;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != 0) {
+                int i = slot(k, mask);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return assigned + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        assigned = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+
+        if (hasZeroKey) {
+            sb.append(0).append("=").append(zeroValue);
+            first = false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                if (!first) sb.append(", ");
+                sb.append(keys[i]).append("=").append(values[i]);
+                first = false;
+            }
+        }
+
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.collection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+import static org.example.collection.CustomHashMapSnapshot.*;
+
+/**
+ * Read-only view over a snapshot written by {@link CustomHashMap#snapshot}.
+ * The file is memory-mapped and looked up in place: opening costs one pass
+ * for the checksum (or nothing when verification is skipped) and
+ * {@code get} only deserializes the value it returns. Safe for concurrent
+ * readers until {@link #close()} unmaps the file.
+ */
+public class MappedCustomHashMap<K, V> implements AutoCloseable {
+
+    private final ByteSerializer<K> keySerializer;
+    private final ByteSerializer<V> valueSerializer;
+    private final int tableLength;
+    private final int size;
+    private final int dataStart;
+    private final int dataEnd;
+    private volatile MappedByteBuffer buffer;
+
+    private MappedCustomHashMap(MappedByteBuffer buffer, ByteSerializer<K> keySerializer,
+                                ByteSerializer<V> valueSerializer, int tableLength, int size, int dataLength) {
+        this.buffer = buffer;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.tableLength = tableLength;
+        this.size = size;
+        this.dataStart = HEADER_BYTES + tableLength * Integer.BYTES;
+        this.dataEnd = dataStart + dataLength;
+    }
+
+    public static <K, V> MappedCustomHashMap<K, V> open(Path path, ByteSerializer<K> keySerializer,
+                                                        ByteSerializer<V> valueSerializer) throws IOException {
+        return open(path, keySerializer, valueSerializer, true);
+    }
+
+    /**
+     * @param verifyChecksum whether to read the whole file once to detect a torn
+     *                       or corrupted snapshot before serving lookups from it
+     */
+    public static <K, V> MappedCustomHashMap<K, V> open(Path path, ByteSerializer<K> keySerializer,
+                                                        ByteSerializer<V> valueSerializer,
+                                                        boolean verifyChecksum) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileLength = channel.size();
+            if (fileLength < HEADER_BYTES) {
+                throw new IOException("Snapshot is truncated: " + fileLength + " bytes");
+            }
+            if (fileLength > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot of " + fileLength + " bytes exceeds the 2 GB mapping limit");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+        }
+
+        try {
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("Not a CustomHashMap snapshot: " + path);
+            }
+            int version = buffer.getInt(VERSION_OFFSET);
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ", expected " + VERSION);
+            }
+            int tableLength = buffer.getInt(TABLE_LENGTH_OFFSET);
+            int size = buffer.getInt(ENTRY_COUNT_OFFSET);
+            long dataLength = buffer.getLong(DATA_LENGTH_OFFSET);
+            if (tableLength <= 0 || Integer.bitCount(tableLength) != 1 || size < 0 || dataLength < 0
+                    || HEADER_BYTES + (long) tableLength * Integer.BYTES + dataLength != buffer.capacity()) {
+                throw new IOException("Snapshot is truncated or has a corrupted header: " + path);
+            }
+            if (verifyChecksum) {
+                CRC32 crc = new CRC32();
+                crc.update(buffer.slice(HEADER_BYTES, buffer.capacity() - HEADER_BYTES));
+                if (crc.getValue() != buffer.getLong(CHECKSUM_OFFSET)) {
+                    throw new IOException("Snapshot checksum mismatch: " + path);
+                }
+            }
+            return new MappedCustomHashMap<>(buffer, keySerializer, valueSerializer, tableLength, size, (int) dataLength);
+        } catch (IOException | RuntimeException e) {
+            DirectMemory.free(buffer);
+            throw e;
+        }
+    }
+
+    private MappedByteBuffer buffer() {
+        MappedByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new IllegalStateException("Map is closed");
+        }
+        return buffer;
+    }
+
+    public V get(K key) {
+        MappedByteBuffer buffer = buffer();
+        int record = find(buffer, key);
+        return record < 0 ? null : readValue(buffer, record);
+    }
+
+    public boolean containsKey(K key) {
+        return find(buffer(), key) >= 0;
+    }
+
+    // returns the absolute position of the matching record, or -1
+    private int find(MappedByteBuffer buffer, K key) {
+        ByteBuffer keyBytes = null;
+        int keyLength = NULL_LENGTH;
+        if (key != null) {
+            keyLength = keySerializer.size(key);
+            keyBytes = ByteBuffer.allocate(keyLength);
+            keySerializer.write(key, keyBytes);
+        }
+        int hash = hash(keyBytes, keyLength);
+
+        int entry = buffer.getInt(HEADER_BYTES + (hash & (tableLength - 1)) * Integer.BYTES);
+        while (entry != 0) {
+            int record = dataStart + entry - 1;
+            if (buffer.getInt(record + HASH) == hash
+                    && buffer.getInt(record + KEY_LENGTH) == keyLength
+                    && (keyBytes == null || bytesEqual(buffer, record + RECORD_HEADER_BYTES, keyBytes, keyLength))) {
+                return record;
+            }
+            entry = buffer.getInt(record + NEXT);
+        }
+        return -1;
+    }
+
+    private static boolean bytesEqual(ByteBuffer buffer, int position, ByteBuffer bytes, int length) {
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            if (buffer.getLong(position + i) != bytes.getLong(i)) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (buffer.get(position + i) != bytes.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private K readKey(MappedByteBuffer buffer, int record) {
+        int keyLength = buffer.getInt(record + KEY_LENGTH);
+        if (keyLength == NULL_LENGTH) {
+            return null;
+        }
+        return keySerializer.read(buffer.slice(record + RECORD_HEADER_BYTES, keyLength));
+    }
+
+    private V readValue(MappedByteBuffer buffer, int record) {
+        int keyLength = Math.max(buffer.getInt(record + KEY_LENGTH), 0);
+        int valueLength = buffer.getInt(record + VALUE_LENGTH);
+        if (valueLength == NULL_LENGTH) {
+            return null;
+        }
+        return valueSerializer.read(buffer.slice(record + RECORD_HEADER_BYTES + keyLength, valueLength));
+    }
+
+    /**
+     * Deserializes every entry in file order.
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        MappedByteBuffer buffer = buffer();
+        int record = dataStart;
+        while (record < dataEnd) {
+            action.accept(readKey(buffer, record), readValue(buffer, record));
+            record += RECORD_HEADER_BYTES
+                    + Math.max(buffer.getInt(record + KEY_LENGTH), 0)
+                    + Math.max(buffer.getInt(record + VALUE_LENGTH), 0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Unmaps the file. Lookups afterwards fail with {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        MappedByteBuffer buffer = this.buffer;
+        this.buffer = null;
+        DirectMemory.free(buffer);
+    }
+}
@@ -0,0 +1,399 @@
+package org.example.collection;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Chained hash map whose bucket table and entries live in direct memory, so a
+ * map with tens of millions of entries costs the garbage collector a handful
+ * of objects. Keys and values are stored in serialized form; {@code get}
+ * deserializes the value on every hit.
+ *
+ * <p>Entries are appended to a data area as
+ * {@code [hash][next][keyLength][valueLength][key bytes][value bytes]}, and
+ * bins are chained through the {@code next} offsets. Removed or replaced
+ * entries leave garbage behind that is reclaimed by compaction once it makes
+ * up half of the data area. Call {@link #close()} to release the memory
+ * without waiting for the garbage collector. Keys are hashed and compared by
+ * their serialized bytes, so {@code hashCode} and {@code equals} of the key
+ * type play no part.
+ */
+public class OffHeapCustomHashMap<K, V> implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 28;
+    private static final int INITIAL_DATA_BYTES = 64 * 1024;
+    private static final int MAXIMUM_DATA_BYTES = Integer.MAX_VALUE - 8;
+
+    private static final int HASH = 0;
+    private static final int NEXT = 4;
+    private static final int KEY_LENGTH = 8;
+    private static final int VALUE_LENGTH = 12;
+    private static final int HEADER_BYTES = 16;
+
+    private final ByteSerializer<K> keySerializer;
+    private final ByteSerializer<V> valueSerializer;
+
+    // one int per bucket: offset of the first entry plus one, 0 for an empty bucket
+    private ByteBuffer table;
+    private int capacity;
+    private int threshold;
+    private ByteBuffer data;
+    private int dataEnd;
+    private long garbageBytes;
+    private int size;
+    private ByteBuffer scratch = ByteBuffer.allocate(64);
+    private boolean closed;
+
+    // location of the last entry found by find(), valid until the next mutation
+    private int foundPrev;
+    private int foundBucket;
+
+    public OffHeapCustomHashMap(ByteSerializer<K> keySerializer, ByteSerializer<V> valueSerializer) {
+        this(keySerializer, valueSerializer, INITIAL_CAPACITY);
+    }
+
+    public OffHeapCustomHashMap(ByteSerializer<K> keySerializer, ByteSerializer<V> valueSerializer, int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal expected size: " + expectedSize);
+        }
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        int capacity = tableSizeFor((int) Math.min(Math.ceil(expectedSize / (double) LOAD_FACTOR), MAXIMUM_CAPACITY));
+        allocateTable(capacity);
+        data = ByteBuffer.allocateDirect(INITIAL_DATA_BYTES);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        if (capacity <= INITIAL_CAPACITY) return INITIAL_CAPACITY;
+        if (capacity >= MAXIMUM_CAPACITY) return MAXIMUM_CAPACITY;
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    private void allocateTable(int capacity) {
+        this.table = ByteBuffer.allocateDirect(capacity * Integer.BYTES);
+        this.capacity = capacity;
+        this.threshold = capacity >= MAXIMUM_CAPACITY ? Integer.MAX_VALUE : (int) (capacity * LOAD_FACTOR);
+    }
+
+    // the key must already be in scratch
+    private int hash(int keyLength) {
+        return ByteHash.hash(scratch, 0, keyLength);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Map is closed");
+        }
+    }
+
+    private int serializeKey(K key) {
+        int length = keySerializer.size(key);
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        keySerializer.write(key, scratch);
+        if (scratch.position() != length) {
+            throw new IllegalStateException("Key serializer wrote " + scratch.position() + " bytes, declared " + length);
+        }
+        return length;
+    }
+
+    // compares the key in scratch with the key stored at entry offset, 8 bytes at a time
+    private boolean keyEquals(int offset, int length) {
+        int base = offset + HEADER_BYTES;
+        int i = 0;
+        for (; i + Long.BYTES <= length; i += Long.BYTES) {
+            if (scratch.getLong(i) != data.getLong(base + i)) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (scratch.get(i) != data.get(base + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // returns the entry offset plus one, or 0; the key must already be in scratch
+    private int find(int hash, int keyLength) {
+        int bucket = hash & (capacity - 1);
+        int prev = 0;
+        int entry = table.getInt(bucket * Integer.BYTES);
+        while (entry != 0) {
+            int offset = entry - 1;
+            if (data.getInt(offset + HASH) == hash
+                    && data.getInt(offset + KEY_LENGTH) == keyLength
+                    && keyEquals(offset, keyLength)) {
+                break;
+            }
+            prev = entry;
+            entry = data.getInt(offset + NEXT);
+        }
+        foundBucket = bucket;
+        foundPrev = prev;
+        return entry;
+    }
+
+    private int recordSize(int offset) {
+        return HEADER_BYTES + data.getInt(offset + KEY_LENGTH) + data.getInt(offset + VALUE_LENGTH);
+    }
+
+    private V readValue(int offset) {
+        int keyLength = data.getInt(offset + KEY_LENGTH);
+        int valueLength = data.getInt(offset + VALUE_LENGTH);
+        return valueSerializer.read(data.slice(offset + HEADER_BYTES + keyLength, valueLength));
+    }
+
+    private K readKey(int offset) {
+        return keySerializer.read(data.slice(offset + HEADER_BYTES, data.getInt(offset + KEY_LENGTH)));
+    }
+
+    private void writeValue(int offset, int keyLength, V value, int valueLength) {
+        ByteBuffer target = data.slice(offset + HEADER_BYTES + keyLength, valueLength);
+        valueSerializer.write(value, target);
+        if (target.position() != valueLength) {
+            throw new IllegalStateException("Value serializer wrote " + target.position() + " bytes, declared " + valueLength);
+        }
+    }
+
+    private void link(int prev, int bucket, int entry) {
+        if (prev == 0) {
+            table.putInt(bucket * Integer.BYTES, entry);
+        } else {
+            data.putInt(prev - 1 + NEXT, entry);
+        }
+    }
+
+    public V get(K key) {
+        ensureOpen();
+        int keyLength = serializeKey(key);
+        int entry = find(hash(keyLength), keyLength);
+        return entry == 0 ? null : readValue(entry - 1);
+    }
+
+    public boolean containsKey(K key) {
+        ensureOpen();
+        int keyLength = serializeKey(key);
+        return find(hash(keyLength), keyLength) != 0;
+    }
+
+    public V put(K key, V value) {
+        ensureOpen();
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int keyLength = serializeKey(key);
+        int hash = hash(keyLength);
+        int valueLength = valueSerializer.size(value);
+        int recordSize = HEADER_BYTES + keyLength + valueLength;
+
+        int entry = find(hash, keyLength);
+        if (entry != 0 && data.getInt(entry - 1 + VALUE_LENGTH) == valueLength) {
+            V oldValue = readValue(entry - 1);
+            writeValue(entry - 1, keyLength, value, valueLength);
+            return oldValue;
+        }
+
+        // making room may compact the data area and move every entry
+        if (ensureSpace(recordSize)) {
+            entry = find(hash, keyLength);
+        }
+
+        int offset = dataEnd;
+        data.putInt(offset + HASH, hash);
+        data.putInt(offset + KEY_LENGTH, keyLength);
+        data.putInt(offset + VALUE_LENGTH, valueLength);
+        data.put(offset + HEADER_BYTES, scratch, 0, keyLength);
+        writeValue(offset, keyLength, value, valueLength);
+        dataEnd += recordSize;
+
+        if (entry != 0) {
+            int oldOffset = entry - 1;
+            V oldValue = readValue(oldOffset);
+            data.putInt(offset + NEXT, data.getInt(oldOffset + NEXT));
+            link(foundPrev, foundBucket, offset + 1);
+            garbageBytes += recordSize(oldOffset);
+            return oldValue;
+        }
+
+        data.putInt(offset + NEXT, table.getInt(foundBucket * Integer.BYTES));
+        table.putInt(foundBucket * Integer.BYTES, offset + 1);
+        if (++size > threshold) {
+            resizeTable();
+        }
+        return null;
+    }
+
+    public V remove(K key) {
+        ensureOpen();
+        int keyLength = serializeKey(key);
+        int entry = find(hash(keyLength), keyLength);
+        if (entry == 0) {
+            return null;
+        }
+        int offset = entry - 1;
+        V oldValue = readValue(offset);
+        link(foundPrev, foundBucket, data.getInt(offset + NEXT));
+        garbageBytes += recordSize(offset);
+        size--;
+        return oldValue;
+    }
+
+    // returns true if entries were moved by compaction
+    private boolean ensureSpace(int recordSize) {
+        if ((long) dataEnd + recordSize <= data.capacity()) {
+            return false;
+        }
+        boolean compacted = false;
+        if (garbageBytes > 0 && garbageBytes >= dataEnd / 2) {
+            compact(data.capacity());
+            compacted = true;
+        }
+        long required = (long) dataEnd + recordSize;
+        if (required > data.capacity()) {
+            if (required > MAXIMUM_DATA_BYTES) {
+                throw new IllegalStateException("Off-heap data area is full: " + dataEnd + " bytes");
+            }
+            long newCapacity = Math.min(Math.max((long) data.capacity() * 2, required), MAXIMUM_DATA_BYTES);
+            if (garbageBytes > 0) {
+                compact((int) newCapacity);
+                compacted = true;
+            } else {
+                ByteBuffer newData = ByteBuffer.allocateDirect((int) newCapacity);
+                newData.put(0, data, 0, dataEnd);
+                DirectMemory.free(data);
+                data = newData;
+            }
+        }
+        return compacted;
+    }
+
+    // copies live entries into a fresh data area and rebuilds the bucket chains
+    private void compact(int newCapacity) {
+        ByteBuffer oldData = data;
+        ByteBuffer newData = ByteBuffer.allocateDirect(newCapacity);
+        int end = 0;
+
+        for (int bucket = 0; bucket < capacity; bucket++) {
+            int entry = table.getInt(bucket * Integer.BYTES);
+            int newHead = 0;
+            while (entry != 0) {
+                int offset = entry - 1;
+                int recordSize = HEADER_BYTES + oldData.getInt(offset + KEY_LENGTH) + oldData.getInt(offset + VALUE_LENGTH);
+                int next = oldData.getInt(offset + NEXT);
+                newData.put(end, oldData, offset, recordSize);
+                newData.putInt(end + NEXT, newHead);
+                newHead = end + 1;
+                end += recordSize;
+                entry = next;
+            }
+            table.putInt(bucket * Integer.BYTES, newHead);
+        }
+
+        DirectMemory.free(oldData);
+        data = newData;
+        dataEnd = end;
+        garbageBytes = 0;
+    }
+
+    private void resizeTable() {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        ByteBuffer oldTable = table;
+        int oldCapacity = capacity;
+        allocateTable(oldCapacity * 2);
+        int mask = capacity - 1;
+
+        for (int bucket = 0; bucket < oldCapacity; bucket++) {
+            int entry = oldTable.getInt(bucket * Integer.BYTES);
+            while (entry != 0) {
+                int offset = entry - 1;
+                int next = data.getInt(offset + NEXT);
+                int index = data.getInt(offset + HASH) & mask;
+                data.putInt(offset + NEXT, table.getInt(index * Integer.BYTES));
+                table.putInt(index * Integer.BYTES, entry);
+                entry = next;
+            }
+        }
+        DirectMemory.free(oldTable);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        ensureOpen();
+        for (int i = 0; i < capacity; i++) {
+            table.putInt(i * Integer.BYTES, 0);
+        }
+        dataEnd = 0;
+        garbageBytes = 0;
+        size = 0;
+    }
+
+    /** Number of buckets in the off-heap table. */
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Direct memory reserved by the table and the data area. */
+    public long allocatedBytes() {
+        return closed ? 0 : (long) table.capacity() + data.capacity();
+    }
+
+    /** Direct memory holding the table and live entries, excluding garbage. */
+    public long usedBytes() {
+        return closed ? 0 : (long) table.capacity() + dataEnd - garbageBytes;
+    }
+
+    /** Bytes of removed or replaced entries waiting for compaction. */
+    public long garbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Releases the direct memory right away. The map cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        DirectMemory.free(table);
+        DirectMemory.free(data);
+        table = null;
+        data = null;
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        if (closed) {
+            return "{closed}";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+
+        for (int bucket = 0; bucket < capacity; bucket++) {
+            for (int entry = table.getInt(bucket * Integer.BYTES); entry != 0; entry = data.getInt(entry - 1 + NEXT)) {
+                if (!first) sb.append(", ");
+                sb.append(readKey(entry - 1)).append("=").append(readValue(entry - 1));
+                first = false;
+            }
+        }
+
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,490 @@
+package org.example.collection;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Immutable hash array mapped trie. {@link #with} and {@link #without}
+ * return a new version that shares every untouched branch with this one, so
+ * an update copies only the O(log32 n) nodes on the path to its key and
+ * keeping an old version around costs nothing.
+ *
+ * <p>Each trie level consumes 5 bits of the hash. A node keeps a 32-bit
+ * bitmap of the slots in use and a dense array with two cells per slot:
+ * key and value, or {@code null} and a child node. Keys whose full hashes
+ * are equal share a collision node that is searched linearly.
+ *
+ * <p>Like {@link FrozenCustomHashMap}, an instance may be shared between
+ * threads freely and every {@code Map} mutator throws
+ * {@link UnsupportedOperationException}. {@link CopyOnWriteCustomHashMap}
+ * publishes the current version for lock-free readers.
+ */
+public final class PersistentCustomHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    // stands in for a null key, since a null key cell marks a child node
+    private static final Object NULL_KEY = new Object();
+    private static final PersistentCustomHashMap<?, ?> EMPTY =
+            new PersistentCustomHashMap<>(new BitmapNode(0, new Object[0]), 0);
+
+    private final TrieNode root;
+    private final int size;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private PersistentCustomHashMap(TrieNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentCustomHashMap<K, V> empty() {
+        return (PersistentCustomHashMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentCustomHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentCustomHashMap) {
+            @SuppressWarnings("unchecked")
+            PersistentCustomHashMap<K, V> persistent = (PersistentCustomHashMap<K, V>) map;
+            return persistent;
+        }
+        return PersistentCustomHashMap.<K, V>empty().withAll(map);
+    }
+
+    private static int hash(Object key) {
+        return CustomHashMap.hash(key, false, 0, 0);
+    }
+
+    private static Object mask(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K unmask(Object key) {
+        return key == NULL_KEY ? null : (K) key;
+    }
+
+    /** Returns a version that maps {@code key} to {@code value}; this one is left as it was. */
+    public PersistentCustomHashMap<K, V> with(K key, V value) {
+        Delta delta = new Delta();
+        TrieNode newRoot = root.put(0, hash(key), mask(key), value, delta);
+        return newRoot == root ? this : new PersistentCustomHashMap<>(newRoot, size + delta.size);
+    }
+
+    /** Returns a version without {@code key}; this one is left as it was. */
+    public PersistentCustomHashMap<K, V> without(Object key) {
+        Delta delta = new Delta();
+        TrieNode newRoot = root.remove(0, hash(key), mask(key), delta);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        return new PersistentCustomHashMap<>(newRoot, size + delta.size);
+    }
+
+    /** Returns a version with every entry of {@code map} added, its values winning. */
+    public PersistentCustomHashMap<K, V> withAll(Map<? extends K, ? extends V> map) {
+        Delta delta = new Delta();
+        TrieNode newRoot = root;
+        int newSize = size;
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            K key = entry.getKey();
+            delta.size = 0;
+            newRoot = newRoot.put(0, hash(key), mask(key), entry.getValue(), delta);
+            newSize += delta.size;
+        }
+        return newRoot == root ? this : new PersistentCustomHashMap<>(newRoot, newSize);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (V) root.find(0, hash(key), mask(key), null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        return (V) root.find(0, hash(key), mask(key), defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root.find(0, hash(key), mask(key), NULL_KEY) != NULL_KEY;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    @Override
+    public V put(K key, V value) { throw uoe(); }
+    @Override
+    public V remove(Object key) { throw uoe(); }
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) { throw uoe(); }
+    @Override
+    public void clear() { throw uoe(); }
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) { throw uoe(); }
+    @Override
+    public V putIfAbsent(K key, V value) { throw uoe(); }
+    @Override
+    public boolean remove(Object key, Object value) { throw uoe(); }
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) { throw uoe(); }
+    @Override
+    public V replace(K key, V value) { throw uoe(); }
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) { throw uoe(); }
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) { throw uoe(); }
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) { throw uoe(); }
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) { throw uoe(); }
+
+    private static UnsupportedOperationException uoe() {
+        return new UnsupportedOperationException("PersistentCustomHashMap is immutable, use with() and without()");
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        public int size() { return size; }
+
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator<>(root);
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Object key = entry.getKey();
+            Object value = root.find(0, hash(key), mask(key), NULL_KEY);
+            return value != NULL_KEY && Objects.equals(value, entry.getValue());
+        }
+    }
+
+    // size change of one update, filled in on the way down
+    private static final class Delta {
+        int size;
+    }
+
+    private abstract static class TrieNode {
+        // array with a key at even and its value or child at odd indices
+        final Object[] array;
+
+        TrieNode(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key, Object notFound);
+
+        // returns this node if nothing changed
+        abstract TrieNode put(int shift, int hash, Object key, Object value, Delta delta);
+
+        // returns this node if nothing changed and null once the node is empty
+        abstract TrieNode remove(int shift, int hash, Object key, Delta delta);
+
+        void forEach(BiConsumer<Object, Object> action) {
+            Object[] array = this.array;
+            for (int i = 0; i < array.length; i += 2) {
+                Object key = array[i];
+                if (key == null) {
+                    ((TrieNode) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(unmask(key), array[i + 1]);
+                }
+            }
+        }
+
+        // the one key/value cell pair left in this node, or null; lets a
+        // parent inline it instead of keeping a chain of single-entry nodes
+        Object[] singleEntry() {
+            return array.length == 2 && array[0] != null ? array : null;
+        }
+    }
+
+    private static final class BitmapNode extends TrieNode {
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private static int bit(int shift, int hash) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int slot(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1)) << 1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key, Object notFound) {
+            TrieNode node = this;
+            while (node instanceof BitmapNode) {
+                BitmapNode bitmapNode = (BitmapNode) node;
+                int bit = bit(shift, hash);
+                if ((bitmapNode.bitmap & bit) == 0) {
+                    return notFound;
+                }
+                int i = bitmapNode.slot(bit);
+                Object k = bitmapNode.array[i];
+                if (k != null) {
+                    return k == key || k.equals(key) ? bitmapNode.array[i + 1] : notFound;
+                }
+                node = (TrieNode) bitmapNode.array[i + 1];
+                shift += BITS;
+            }
+            return node.find(shift, hash, key, notFound);
+        }
+
+        @Override
+        TrieNode put(int shift, int hash, Object key, Object value, Delta delta) {
+            int bit = bit(shift, hash);
+            int i = slot(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, i);
+                newArray[i] = key;
+                newArray[i + 1] = value;
+                System.arraycopy(array, i, newArray, i + 2, array.length - i);
+                delta.size = 1;
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                TrieNode child = (TrieNode) v;
+                TrieNode newChild = child.put(shift + BITS, hash, key, value, delta);
+                return newChild == child ? this : withCell(i + 1, newChild);
+            }
+            if (k == key || k.equals(key)) {
+                return v == value ? this : withCell(i + 1, value);
+            }
+            delta.size = 1;
+            TrieNode child = pair(shift + BITS, hash(unmask(k)), k, v, hash, key, value);
+            return withCells(i, null, child);
+        }
+
+        @Override
+        TrieNode remove(int shift, int hash, Object key, Delta delta) {
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = slot(bit);
+            Object k = array[i];
+            if (k == null) {
+                TrieNode child = (TrieNode) array[i + 1];
+                TrieNode newChild = child.remove(shift + BITS, hash, key, delta);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild == null) {
+                    return without(bit, i);
+                }
+                Object[] single = newChild.singleEntry();
+                return single != null ? withCells(i, single[0], single[1]) : withCell(i + 1, newChild);
+            }
+            if (k == key || k.equals(key)) {
+                delta.size = -1;
+                return without(bit, i);
+            }
+            return this;
+        }
+
+        private TrieNode without(int bit, int i) {
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        private BitmapNode withCell(int i, Object cell) {
+            Object[] newArray = array.clone();
+            newArray[i] = cell;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private BitmapNode withCells(int i, Object key, Object cell) {
+            Object[] newArray = array.clone();
+            newArray[i] = key;
+            newArray[i + 1] = cell;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        // the smallest subtree that tells two different keys apart
+        private static TrieNode pair(int shift, int hash1, Object key1, Object value1,
+                                     int hash2, Object key2, Object value2) {
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+            int bit1 = bit(shift, hash1);
+            int bit2 = bit(shift, hash2);
+            if (bit1 == bit2) {
+                TrieNode child = pair(shift + BITS, hash1, key1, value1, hash2, key2, value2);
+                return new BitmapNode(bit1, new Object[] {null, child});
+            }
+            Object[] array = Integer.compareUnsigned(bit1, bit2) < 0
+                    ? new Object[] {key1, value1, key2, value2}
+                    : new Object[] {key2, value2, key1, value1};
+            return new BitmapNode(bit1 | bit2, array);
+        }
+    }
+
+    // keys whose whole hash is equal, below the last level that could split them
+    private static final class CollisionNode extends TrieNode {
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                Object k = array[i];
+                if (k == key || k.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key, Object notFound) {
+            if (hash != this.hash) {
+                return notFound;
+            }
+            int i = indexOf(key);
+            return i < 0 ? notFound : array[i + 1];
+        }
+
+        @Override
+        TrieNode put(int shift, int hash, Object key, Object value, Delta delta) {
+            if (hash != this.hash) {
+                // a different hash reached this node, so the level above splits them
+                TrieNode node = new BitmapNode(BitmapNode.bit(shift, this.hash), new Object[] {null, this});
+                return node.put(shift, hash, key, value, delta);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] newArray = array.clone();
+                newArray[i + 1] = value;
+                return new CollisionNode(hash, newArray);
+            }
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            delta.size = 1;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        TrieNode remove(int shift, int hash, Object key, Delta delta) {
+            if (hash != this.hash) {
+                return this;
+            }
+            int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            delta.size = -1;
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, array.length - i - 2);
+            return new CollisionNode(hash, newArray);
+        }
+    }
+
+    // depth-first over the trie with an explicit stack of nodes and positions
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        // 32 bits at 5 per level, plus a collision node
+        private final TrieNode[] nodes = new TrieNode[8];
+        private final int[] positions = new int[8];
+        private int depth;
+        private Object nextKey;
+        private Object nextValue;
+
+        EntryIterator(TrieNode root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        private void advance() {
+            while (depth >= 0) {
+                TrieNode node = nodes[depth];
+                int i = positions[depth];
+                if (i == node.array.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                Object key = node.array[i];
+                if (key == null) {
+                    depth++;
+                    nodes[depth] = (TrieNode) node.array[i + 1];
+                    positions[depth] = 0;
+                } else {
+                    nextKey = key;
+                    nextValue = node.array[i + 1];
+                    return;
+                }
+            }
+            nextKey = null;
+        }
+
+        public boolean hasNext() {
+            return nextKey != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K, V> next() {
+            if (nextKey == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> entry = new SimpleImmutableEntry<>(unmask(nextKey), (V) nextValue);
+            advance();
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package org.example.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Map split into a fixed number of plain {@link CustomHashMap} shards, each
+ * owned by one thread. A key always goes to the shard picked by the high
+ * bits of its hash. Operations are queued to the owning thread and complete a
+ * {@link CompletableFuture}, so the maps themselves are never shared and need
+ * no locks; writes to different shards run in parallel on different cores.
+ *
+ * <p>A shard thread drains its queue in batches of up to {@value #BATCH_SIZE}
+ * operations per wake-up, running them in the order they were queued.
+ * Futures complete on the shard thread, so dependent stages added without an
+ * executor run there too and should be short.
+ *
+ * <p>{@link #size()} adds up sizes the shards publish after each operation,
+ * so it is cheap and counts every operation whose future has completed, but
+ * not those still queued. {@link #close()} runs every
+ * operation queued so far and stops the threads; later operations fail with
+ * {@link RejectedExecutionException}.
+ */
+public class ShardedCustomHashMap<K, V> implements AutoCloseable {
+
+    private static final int BATCH_SIZE = 256;
+    private static final AtomicInteger MAP_COUNT = new AtomicInteger();
+
+    private final Shard<K, V>[] shards;
+    private final int shift;
+
+    /** One shard per available processor, rounded up to a power of two. */
+    public ShardedCustomHashMap() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ShardedCustomHashMap(int shardCount) {
+        this(shardCount, defaultThreadFactory());
+    }
+
+    /**
+     * Rounds {@code shardCount} up to a power of two and starts one thread per
+     * shard from {@code threadFactory}, which may also hand out virtual threads.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ShardedCustomHashMap(int shardCount, ThreadFactory threadFactory) {
+        if (shardCount <= 0 || shardCount > 1 << 16) {
+            throw new IllegalArgumentException("Illegal shard count: " + shardCount);
+        }
+        Objects.requireNonNull(threadFactory);
+        int bits = 32 - Integer.numberOfLeadingZeros(shardCount - 1);
+        this.shift = 32 - bits;
+        this.shards = new Shard[1 << bits];
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new Shard<>(threadFactory);
+            }
+        } catch (RuntimeException | Error e) {
+            // the map is never handed out, so nothing else would stop these threads
+            for (Shard<K, V> shard : shards) {
+                if (shard != null) {
+                    shard.stop();
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static ThreadFactory defaultThreadFactory() {
+        String prefix = "sharded-custom-hash-map-" + MAP_COUNT.incrementAndGet() + "-shard-";
+        AtomicInteger shardIndex = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + shardIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private Shard<K, V> shardFor(Object key) {
+        return shards[shardIndex(key)];
+    }
+
+    // the top bits after a multiply; the shard maps index their bins with the low bits
+    private int shardIndex(Object key) {
+        return shift == 32 ? 0 : (CustomHashMap.hash(key, false, 0, 0) * 0x9E3779B9) >>> shift;
+    }
+
+    public CompletableFuture<V> putAsync(K key, V value) {
+        return shardFor(key).submit(map -> map.put(key, value));
+    }
+
+    public CompletableFuture<V> getAsync(K key) {
+        return shardFor(key).submit(map -> map.get(key));
+    }
+
+    public CompletableFuture<V> removeAsync(K key) {
+        return shardFor(key).submit(map -> map.remove(key));
+    }
+
+    public CompletableFuture<V> mergeAsync(K key, V value,
+                                           BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return shardFor(key).submit(map -> map.merge(key, value, remappingFunction));
+    }
+
+    public CompletableFuture<V> computeAsync(K key,
+                                             BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return shardFor(key).submit(map -> map.compute(key, remappingFunction));
+    }
+
+    /**
+     * Runs {@code action} on the thread that owns {@code key}, with the shard
+     * map holding it. The map must not escape the action.
+     */
+    public <R> CompletableFuture<R> submit(K key, Function<? super CustomHashMap<K, V>, ? extends R> action) {
+        return shardFor(key).submit(action);
+    }
+
+    /** Puts every entry of {@code map} with one queued operation per shard. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public CompletableFuture<Void> putAllAsync(Map<? extends K, ? extends V> map) {
+        List<Map.Entry<? extends K, ? extends V>>[] parts = new List[shards.length];
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            int index = shardIndex(entry.getKey());
+            if (parts[index] == null) {
+                parts[index] = new ArrayList<>();
+            }
+            parts[index].add(entry);
+        }
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<Map.Entry<? extends K, ? extends V>> part = parts[i];
+            if (part != null) {
+                futures.add(shards[i].submit(shard -> {
+                    for (Map.Entry<? extends K, ? extends V> entry : part) {
+                        shard.put(entry.getKey(), entry.getValue());
+                    }
+                    return null;
+                }));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Runs {@code action} over every entry, all shards in parallel, each on its
+     * own thread and queued behind the operations submitted before.
+     */
+    @SuppressWarnings("rawtypes")
+    public CompletableFuture<Void> forEachAsync(BiConsumer<? super K, ? super V> action) {
+        Objects.requireNonNull(action);
+        CompletableFuture<?>[] futures = new CompletableFuture[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            futures[i] = shards[i].submit(map -> {
+                map.forEach(action);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /** Number of entries as of the last operation each shard finished. */
+    public int size() {
+        long size = 0;
+        for (Shard<K, V> shard : shards) {
+            size += shard.size;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /** Runs the operations queued so far, then stops the shard threads and waits for them. */
+    @Override
+    public void close() {
+        for (Shard<K, V> shard : shards) {
+            shard.stop();
+        }
+        boolean interrupted = false;
+        for (Shard<K, V> shard : shards) {
+            // closing from a shard's own callback cannot wait for that shard
+            while (shard.thread != Thread.currentThread()) {
+                try {
+                    shard.thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Task<K, V> {
+        final Function<? super CustomHashMap<K, V>, ?> action;
+        final CompletableFuture<Object> future;
+
+        Task(Function<? super CustomHashMap<K, V>, ?> action, CompletableFuture<Object> future) {
+            this.action = action;
+            this.future = future;
+        }
+    }
+
+    private static final class Shard<K, V> implements Runnable {
+        private static final Task<?, ?> STOP = new Task<>(map -> null, null);
+
+        private final CustomHashMap<K, V> map = new CustomHashMap<>();
+        private final BlockingQueue<Task<K, V>> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+        private volatile boolean stopping;
+        private volatile boolean terminated;
+        // written by the shard thread only
+        volatile int size;
+
+        Shard(ThreadFactory threadFactory) {
+            this.thread = threadFactory.newThread(this);
+            if (thread == null) {
+                throw new IllegalStateException("Thread factory returned null");
+            }
+            thread.start();
+        }
+
+        @SuppressWarnings("unchecked")
+        <R> CompletableFuture<R> submit(Function<? super CustomHashMap<K, V>, ? extends R> action) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            if (stopping) {
+                future.completeExceptionally(new RejectedExecutionException("ShardedCustomHashMap is closed"));
+                return (CompletableFuture<R>) future;
+            }
+            queue.add(new Task<>(action, future));
+            // the shard may have drained its queue for the last time in between
+            if (terminated) {
+                rejectQueued();
+            }
+            return (CompletableFuture<R>) future;
+        }
+
+        @SuppressWarnings("unchecked")
+        void stop() {
+            if (!stopping) {
+                stopping = true;
+                queue.add((Task<K, V>) STOP);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Task<K, V>> batch = new ArrayList<>(BATCH_SIZE);
+            boolean stopped = false;
+            while (!stopped) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    // only close() ends a shard, so a stray interrupt is ignored
+                    continue;
+                }
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (int i = 0; i < batch.size(); i++) {
+                    Task<K, V> task = batch.get(i);
+                    if (task == STOP) {
+                        // whatever was drained behind STOP raced with close() and is rejected
+                        stopped = true;
+                        for (int j = i + 1; j < batch.size(); j++) {
+                            reject(batch.get(j));
+                        }
+                        break;
+                    }
+                    run(task);
+                }
+                batch.clear();
+            }
+            terminated = true;
+            rejectQueued();
+        }
+
+        // publishes the size before completing, so a caller that saw the
+        // future complete also sees the operation in size()
+        private void run(Task<K, V> task) {
+            Object result;
+            try {
+                result = task.action.apply(map);
+            } catch (Throwable t) {
+                size = map.size();
+                task.future.completeExceptionally(t);
+                return;
+            }
+            size = map.size();
+            task.future.complete(result);
+        }
+
+        private void rejectQueued() {
+            Task<K, V> task;
+            while ((task = queue.poll()) != null) {
+                reject(task);
+            }
+        }
+
+        private static void reject(Task<?, ?> task) {
+            if (task != STOP) {
+                task.future.completeExceptionally(new RejectedExecutionException("ShardedCustomHashMap is closed"));
+            }
+        }
+    }
+}
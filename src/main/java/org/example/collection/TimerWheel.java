@@ -0,0 +1,162 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMap.LinkedNode;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for {@link ExpiringCustomHashMap}. Level 0 has 64
+ * buckets of about a second, level 1 has 64 buckets of about a minute, then
+ * 32 of about an hour, 4 of about a day and a single overflow bucket.
+ * Scheduling and descheduling an entry are O(1); advancing the clock only
+ * visits the buckets whose time span has passed, and entries from coarse
+ * buckets that are not due yet cascade down into finer ones.
+ *
+ * <p>Buckets are circular lists through the nodes' before/after links with a
+ * sentinel node, so a scheduled node never has null links. Times are
+ * nanoseconds from an arbitrary origin and must not be negative.
+ */
+final class TimerWheel<K, V> {
+
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+            1L << 30, // 1.07s
+            1L << 36, // 1.14m
+            1L << 42, // 1.22h
+            1L << 47, // 1.63d
+            1L << 49, // 6.5d
+            1L << 49,
+    };
+    private static final int[] SHIFT = {30, 36, 42, 47, 49};
+
+    private final LinkedNode<K, V>[][] wheel;
+    // holds the bucket being expired, see expire()
+    private final LinkedNode<K, V> pending = new LinkedNode<>(0, null, null, null);
+    private long nanos;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(long nanos) {
+        this.nanos = nanos;
+        wheel = new LinkedNode[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new LinkedNode[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                LinkedNode<K, V> sentinel = new LinkedNode<>(0, null, null, null);
+                sentinel.before = sentinel;
+                sentinel.after = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    // the deadline of an entry is kept in the long slot of its node
+    static long expiresAt(LinkedNode<?, ?> node) {
+        return node.longSlot;
+    }
+
+    static void setExpiresAt(LinkedNode<?, ?> node, long nanos) {
+        node.longSlot = nanos;
+    }
+
+    void schedule(LinkedNode<K, V> node) {
+        LinkedNode<K, V> sentinel = findBucket(expiresAt(node));
+        node.before = sentinel.before;
+        node.after = sentinel;
+        sentinel.before.after = node;
+        sentinel.before = node;
+    }
+
+    void reschedule(LinkedNode<K, V> node) {
+        deschedule(node);
+        schedule(node);
+    }
+
+    void deschedule(LinkedNode<K, V> node) {
+        if (node.after != null) {
+            node.before.after = node.after;
+            node.after.before = node.before;
+            node.before = null;
+            node.after = null;
+        }
+    }
+
+    /** Moves {@code dst} into the bucket position of {@code src}, which it replaces. */
+    void replace(LinkedNode<K, V> src, LinkedNode<K, V> dst) {
+        setExpiresAt(dst, expiresAt(src));
+        dst.fixedExpiry = src.fixedExpiry;
+        if (src.after != null) {
+            dst.before = src.before;
+            dst.after = src.after;
+            dst.before.after = dst;
+            dst.after.before = dst;
+        }
+    }
+
+    /**
+     * Advances the clock to {@code currentNanos} and hands every entry that
+     * is due to {@code expire}, which must remove it from the map.
+     */
+    void advance(long currentNanos, Consumer<LinkedNode<K, V>> expire) {
+        long previousNanos = nanos;
+        nanos = currentNanos;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previousNanos >>> SHIFT[i];
+            long delta = (currentNanos >>> SHIFT[i]) - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+            expire(i, previousTicks, delta, expire);
+        }
+    }
+
+    void clear() {
+        for (LinkedNode<K, V>[] level : wheel) {
+            for (LinkedNode<K, V> sentinel : level) {
+                sentinel.before = sentinel;
+                sentinel.after = sentinel;
+            }
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta, Consumer<LinkedNode<K, V>> expire) {
+        LinkedNode<K, V>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            LinkedNode<K, V> sentinel = buckets[i & mask];
+            if (sentinel.after == sentinel) {
+                continue;
+            }
+            // the bucket moves behind a sentinel of its own rather than a local
+            // cursor: a removal may replace nodes that are still waiting here
+            pending.after = sentinel.after;
+            pending.before = sentinel.before;
+            pending.after.before = pending;
+            pending.before.after = pending;
+            sentinel.before = sentinel;
+            sentinel.after = sentinel;
+            while (pending.after != pending) {
+                LinkedNode<K, V> node = pending.after;
+                deschedule(node);
+                if (expiresAt(node) - nanos > 0) {
+                    schedule(node);
+                } else {
+                    expire.accept(node);
+                }
+            }
+        }
+    }
+
+    private LinkedNode<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                int index = (int) ((time >>> SHIFT[i]) & (wheel[i].length - 1));
+                return wheel[i][index];
+            }
+        }
+        return wheel[last][0];
+    }
+}
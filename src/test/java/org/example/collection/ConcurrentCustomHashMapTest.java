@@ -0,0 +1,200 @@
+package org.example.collection;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentCustomHashMapTest {
+    private ConcurrentCustomHashMap<String, Integer> map;
+
+    @BeforeEach
+    void setUp() {
+        map = new ConcurrentCustomHashMap<>();
+    }
+
+    @Test
+    @DisplayName("Test put(), get(), remove()")
+    void testBasicOperations() {
+        assertNull(map.put("one", 1));
+        assertNull(map.put("two", 2));
+        assertEquals(1, map.put("one", 10));
+
+        assertEquals(10, map.get("one"));
+        assertEquals(2, map.get("two"));
+        assertNull(map.get("three"));
+        assertEquals(2, map.size());
+
+        assertEquals(2, map.remove("two"));
+        assertNull(map.remove("two"));
+        assertEquals(1, map.size());
+        assertFalse(map.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test putIfAbsent")
+    void testPutIfAbsent() {
+        assertNull(map.putIfAbsent("key", 1));
+        assertEquals(1, map.putIfAbsent("key", 2));
+        assertEquals(1, map.get("key"));
+    }
+
+    @Test
+    @DisplayName("Test null keys and values are rejected")
+    void testNullsRejected() {
+        assertThrows(NullPointerException.class, () -> map.put(null, 1));
+        assertThrows(NullPointerException.class, () -> map.put("key", null));
+    }
+
+    @Test
+    @DisplayName("Test Tree Bins")
+    void testTreeBins() {
+        ConcurrentCustomHashMap<CustomHashMapTest.CollidingKey, Integer> treeMap = new ConcurrentCustomHashMap<>();
+
+        for (int i = 0; i < 200; i++) {
+            treeMap.put(new CustomHashMapTest.CollidingKey(i), i);
+        }
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, treeMap.get(new CustomHashMapTest.CollidingKey(i)));
+        }
+        for (int i = 0; i < 195; i++) {
+            assertEquals(i, treeMap.remove(new CustomHashMapTest.CollidingKey(i)));
+        }
+
+        assertEquals(5, treeMap.size());
+        for (int i = 195; i < 200; i++) {
+            assertEquals(i, treeMap.get(new CustomHashMapTest.CollidingKey(i)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test Tree Bins With Keys That compareTo() Cannot Order")
+    void testTreeBinsWithTiedKeys() {
+        ConcurrentCustomHashMap<TiedKey, Integer> treeMap = new ConcurrentCustomHashMap<>();
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(treeMap.put(new TiedKey(i), i));
+        }
+        assertEquals(100, treeMap.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, treeMap.get(new TiedKey(i)));
+            assertEquals(i, treeMap.put(new TiedKey(i), i * 2));
+        }
+        assertEquals(100, treeMap.size());
+        for (int i = 0; i < 90; i += 2) {
+            assertEquals(i * 2, treeMap.remove(new TiedKey(i)));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i % 2 == 0 && i < 90 ? null : i * 2, treeMap.get(new TiedKey(i)));
+        }
+        assertNull(treeMap.get(new TiedKey(1000)));
+    }
+
+    @Test
+    @DisplayName("Test concurrent writers with resize")
+    void testConcurrentWriters() throws Exception {
+        ConcurrentCustomHashMap<Integer, Integer> shared = new ConcurrentCustomHashMap<>();
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t * perThread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    shared.put(offset + i, offset + i);
+                    assertEquals(offset + i, shared.get(offset + i));
+                }
+                for (int i = 0; i < perThread; i += 2) {
+                    shared.remove(offset + i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(threads * perThread / 2, shared.size());
+        for (int i = 0; i < threads * perThread; i++) {
+            assertEquals(i % 2 == 0 ? null : i, shared.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Test concurrent readers on colliding keys")
+    void testConcurrentReadersOnTreeBin() throws Exception {
+        ConcurrentCustomHashMap<CustomHashMapTest.CollidingKey, Integer> treeMap = new ConcurrentCustomHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            treeMap.put(new CustomHashMapTest.CollidingKey(i), i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Future<?> writer = executor.submit(() -> {
+            for (int round = 0; round < 200; round++) {
+                for (int i = 100; i < 150; i++) {
+                    treeMap.put(new CustomHashMapTest.CollidingKey(i), i);
+                }
+                for (int i = 100; i < 150; i++) {
+                    treeMap.remove(new CustomHashMapTest.CollidingKey(i));
+                }
+            }
+        });
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(executor.submit(() -> {
+                while (!writer.isDone()) {
+                    for (int i = 0; i < 100; i++) {
+                        assertEquals(i, treeMap.get(new CustomHashMapTest.CollidingKey(i)));
+                    }
+                }
+            }));
+        }
+        writer.get();
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+
+        assertEquals(100, treeMap.size());
+    }
+
+    // equal by id, but every instance collides and compares as equal
+    static final class TiedKey implements Comparable<TiedKey> {
+        final int id;
+
+        TiedKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(TiedKey other) {
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TiedKey && ((TiedKey) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.collection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CopyOnWriteCustomHashMapTest {
+
+    @Test
+    @DisplayName("Test ConcurrentMap Operations")
+    void testOperations() {
+        CopyOnWriteCustomHashMap<String, Integer> map = new CopyOnWriteCustomHashMap<>(Map.of("a", 1));
+        assertEquals(1, map.put("a", 2));
+        assertNull(map.putIfAbsent("b", 3));
+        assertEquals(3, map.putIfAbsent("b", 4));
+        assertFalse(map.replace("b", 4, 5));
+        assertTrue(map.replace("b", 3, 5));
+        assertEquals(5, map.replace("b", 6));
+        assertFalse(map.remove("b", 5));
+        assertTrue(map.remove("b", 6));
+        assertEquals(12, map.merge("a", 10, Integer::sum));
+        assertEquals(1, map.computeIfAbsent("c", k -> 1));
+        assertNull(map.computeIfPresent("c", (k, v) -> null));
+        assertEquals(Map.of("a", 12), map);
+
+        map.putAll(Map.of("x", 1, "y", 2));
+        assertEquals(3, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test snapshot() Is Not Affected By Later Writes")
+    void testSnapshot() {
+        CopyOnWriteCustomHashMap<Integer, Integer> map = new CopyOnWriteCustomHashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            map.put(i, i);
+        }
+        PersistentCustomHashMap<Integer, Integer> snapshot = map.snapshot();
+        for (int i = 0; i < 1_000; i += 2) {
+            map.remove(i);
+        }
+        map.update(m -> m.with(-1, -1).without(1));
+
+        assertEquals(1_000, snapshot.size());
+        assertEquals(0, snapshot.get(0));
+        assertEquals(500, map.size());
+        assertNull(map.get(1));
+        assertEquals(-1, map.get(-1));
+        assertSame(map.snapshot(), map.snapshot());
+    }
+
+    @Test
+    @DisplayName("Test Concurrent Writers And Readers")
+    void testConcurrentAccess() throws Exception {
+        CopyOnWriteCustomHashMap<Integer, Integer> map = new CopyOnWriteCustomHashMap<>();
+        int writers = 4;
+        int perWriter = 2_000;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        try {
+            Future<?>[] readers = new Future<?>[2];
+            for (int r = 0; r < readers.length; r++) {
+                readers[r] = executor.submit(() -> {
+                    while (!done.get()) {
+                        PersistentCustomHashMap<Integer, Integer> snapshot = map.snapshot();
+                        int counted = 0;
+                        for (Map.Entry<Integer, Integer> ignored : snapshot.entrySet()) {
+                            counted++;
+                        }
+                        assertEquals(snapshot.size(), counted);
+                    }
+                });
+            }
+            Future<?>[] futures = new Future<?>[writers];
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                futures[w] = executor.submit(() -> {
+                    for (int i = 0; i < perWriter; i++) {
+                        map.put(writer * perWriter + i, i);
+                        map.merge(-1, 1, Integer::sum);
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(writers * perWriter + 1, map.size());
+        assertEquals(writers * perWriter, map.get(-1));
+    }
+}
@@ -0,0 +1,165 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMapTest.CollidingKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomCacheTest {
+
+    @Test
+    @DisplayName("Test LRU evicts the least recently used entry")
+    void testLruEviction() {
+        CustomCache<String, Integer> cache = new CustomCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertEquals(1, cache.get("a"));
+
+        cache.put("d", 4);
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(4, cache.get("d"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    @DisplayName("Test hit, miss and eviction counters")
+    void testStats() {
+        CustomCache<String, Integer> cache = new CustomCache<>(2);
+        assertEquals(1.0, cache.hitRate());
+        cache.put("a", 1);
+        cache.get("a");
+        cache.get("a");
+        cache.get("x");
+        cache.put("b", 2);
+        cache.put("c", 3);
+
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.evictionCount());
+        assertEquals(2.0 / 3, cache.hitRate(), 1e-9);
+
+        cache.resetStats();
+        assertEquals(0, cache.hitCount());
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    @DisplayName("Test weigher bounds the total weight")
+    void testWeightedEviction() {
+        CustomCache<String, String> cache = new CustomCache<>(10, (key, value) -> value.length(),
+                CustomCache.EvictionPolicy.LRU);
+        cache.put("a", "xxxx");
+        cache.put("b", "xxxx");
+        assertEquals(8, cache.weightedSize());
+
+        cache.put("c", "xxxx");
+        assertEquals(8, cache.weightedSize());
+        assertNull(cache.get("a"));
+
+        cache.put("b", "x");
+        assertEquals(5, cache.weightedSize());
+        cache.remove("c");
+        assertEquals(1, cache.weightedSize());
+
+        cache.put("huge", "xxxxxxxxxxxx");
+        assertNull(cache.get("huge"));
+        assertTrue(cache.weightedSize() <= 10);
+    }
+
+    @Test
+    @DisplayName("Test setValue() and replaceAll() re-weigh entries")
+    void testWeightedUpdatesThroughEntries() {
+        CustomCache<String, String> cache = new CustomCache<>(10, (key, value) -> value.length(),
+                CustomCache.EvictionPolicy.LRU);
+        cache.put("a", "xx");
+        cache.put("b", "xx");
+        for (java.util.Map.Entry<String, String> entry : cache.entrySet()) {
+            if (entry.getKey().equals("b")) {
+                assertEquals("xx", entry.setValue("xxx"));
+            }
+        }
+        assertEquals(5, cache.weightedSize());
+
+        cache.replaceAll((key, value) -> value + "xxx");
+        assertEquals(6, cache.weightedSize());
+        assertEquals(1, cache.size());
+        assertEquals("xxxxxx", cache.get("b"));
+    }
+
+    @Test
+    @DisplayName("Test TinyLFU keeps popular keys during a scan")
+    void testTinyLfuResistsScan() {
+        CustomCache<Integer, Integer> cache = new CustomCache<>(100, CustomCache.EvictionPolicy.TINY_LFU);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.put(i, i);
+                cache.get(i);
+            }
+        }
+
+        for (int i = 1000; i < 11_000; i++) {
+            cache.put(i, i);
+            if (i % 4 == 0) {
+                cache.get((i / 4) % 50);
+            }
+        }
+
+        int retained = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(i) != null) {
+                retained++;
+            }
+        }
+        assertTrue(retained >= 45, "retained " + retained);
+        assertTrue(cache.size() <= 100);
+    }
+
+    @Test
+    @DisplayName("Test LRU order survives treeified bins")
+    void testLruWithTreeBins() {
+        CustomCache<CollidingKey, Integer> cache = new CustomCache<>(20);
+        for (int i = 0; i < 20; i++) {
+            cache.put(new CollidingKey(i), i);
+        }
+        cache.get(new CollidingKey(0));
+
+        cache.put(new CollidingKey(100), 100);
+
+        assertEquals(20, cache.size());
+        assertEquals(0, cache.get(new CollidingKey(0)));
+        assertNull(cache.get(new CollidingKey(1)));
+        for (int i = 0; i < 30; i++) {
+            cache.put(new CollidingKey(200 + i), i);
+        }
+        assertEquals(20, cache.size());
+        assertEquals(20, cache.weightedSize());
+        assertTrue(cache.checkTreeInvariants());
+    }
+
+    @Test
+    @DisplayName("Test iterator remove and clear keep the weight in sync")
+    void testRemovalThroughViews() {
+        CustomCache<String, Integer> cache = new CustomCache<>(5);
+        for (int i = 0; i < 5; i++) {
+            cache.put("k" + i, i);
+        }
+        Iterator<String> it = cache.keySet().iterator();
+        it.next();
+        it.remove();
+        assertEquals(4, cache.weightedSize());
+
+        cache.clear();
+        assertEquals(0, cache.weightedSize());
+        cache.put("x", 1);
+        assertEquals(1, cache.get("x"));
+        assertEquals(1, cache.weightedSize());
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMapTest.CollidingKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomCounterMapTest {
+
+    @Test
+    @DisplayName("Test increment(), put(), remove()")
+    void testBasicOperations() {
+        CustomCounterMap<String> counts = new CustomCounterMap<>();
+        assertEquals(1, counts.increment("a"));
+        assertEquals(6, counts.increment("a", 5));
+        assertEquals(-2, counts.increment("b", -2));
+        assertEquals(0, counts.get("c"));
+        assertFalse(counts.containsKey("c"));
+
+        assertEquals(6, counts.put("a", 10));
+        assertEquals(0, counts.put("c", 3));
+        assertEquals(11, counts.total());
+        assertEquals(3, counts.size());
+
+        assertEquals(-2, counts.remove("b"));
+        assertEquals(0, counts.remove("b"));
+        assertEquals(0, counts.increment("a", -10));
+        assertTrue(counts.containsKey("a"));
+        assertEquals("{a=0, c=3}", counts.toString());
+
+        counts.keySet().remove("a");
+        assertEquals(1, counts.size());
+        counts.clear();
+        assertTrue(counts.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test Counts Survive Resizes And Tree Bins")
+    void testAgainstHashMap() {
+        CustomCounterMap<CollidingKey> counts = new CustomCounterMap<>();
+        Map<CollidingKey, Long> expected = new HashMap<>();
+        Random random = new Random(23);
+        for (int i = 0; i < 100_000; i++) {
+            int id = random.nextInt(2_000);
+            CollidingKey key = new CollidingKey(id, id % 50);
+            if (random.nextInt(10) == 0) {
+                assertEquals(expected.getOrDefault(key, 0L), counts.remove(key));
+                expected.remove(key);
+            } else {
+                long delta = random.nextInt(10);
+                assertEquals(expected.merge(key, delta, Long::sum), counts.increment(key, delta));
+            }
+        }
+        assertEquals(expected.size(), counts.size());
+        Map<CollidingKey, Long> actual = new HashMap<>();
+        counts.forEach(actual::put);
+        assertEquals(expected, actual);
+        assertEquals(expected.values().stream().mapToLong(Long::longValue).sum(), counts.total());
+    }
+}
@@ -0,0 +1,170 @@
+package org.example.collection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomHashMapSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private CustomHashMap<String, String> sampleMap(int size) {
+        CustomHashMap<String, String> map = new CustomHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put("key-" + i, "value-" + i);
+        }
+        map.put(null, "null-key");
+        map.put("null-value", null);
+        return map;
+    }
+
+    @Test
+    @DisplayName("Test snapshot and load round trip")
+    void testRoundTrip() throws IOException {
+        Path file = dir.resolve("map.snapshot");
+        sampleMap(10_000).snapshot(file, ByteSerializer.STRING, ByteSerializer.STRING);
+
+        CustomHashMap<String, String> loaded = CustomHashMap.load(file, ByteSerializer.STRING, ByteSerializer.STRING);
+
+        assertEquals(10_002, loaded.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals("value-" + i, loaded.get("key-" + i));
+        }
+        assertEquals("null-key", loaded.get(null));
+        assertNull(loaded.get("null-value"));
+        assertFalse(Files.exists(dir.resolve("map.snapshot.tmp")));
+    }
+
+    @Test
+    @DisplayName("Test lookups on mapped snapshot")
+    void testMappedLookups() throws IOException {
+        Path file = dir.resolve("map.snapshot");
+        sampleMap(1000).snapshot(file, ByteSerializer.STRING, ByteSerializer.STRING);
+
+        try (MappedCustomHashMap<String, String> mapped =
+                     MappedCustomHashMap.open(file, ByteSerializer.STRING, ByteSerializer.STRING)) {
+            assertEquals(1002, mapped.size());
+            assertEquals("value-500", mapped.get("key-500"));
+            assertEquals("null-key", mapped.get(null));
+            assertTrue(mapped.containsKey("null-value"));
+            assertNull(mapped.get("null-value"));
+            assertNull(mapped.get("missing"));
+            assertFalse(mapped.containsKey("missing"));
+        }
+    }
+
+    @Test
+    @DisplayName("Test snapshot of tree bins")
+    void testTreeBins() throws IOException {
+        Path file = dir.resolve("tree.snapshot");
+        CustomHashMap<Integer, Integer> map = new CustomHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            map.put(i << 16, i);
+        }
+        map.snapshot(file, ByteSerializer.INTEGER, ByteSerializer.INTEGER);
+
+        CustomHashMap<Integer, Integer> loaded = CustomHashMap.load(file, ByteSerializer.INTEGER, ByteSerializer.INTEGER);
+        assertEquals(200, loaded.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, loaded.get(i << 16));
+        }
+    }
+
+    @Test
+    @DisplayName("Test byte[] keys are found by content")
+    void testByteArrayKeys() throws IOException {
+        // byte[].hashCode() is the identity hash, so only a hash of the bytes finds these
+        Path file = dir.resolve("bytes.snapshot");
+        CustomHashMap<byte[], Integer> map = new CustomHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(new byte[] {(byte) i, (byte) (i >>> 8), 1, 2, 3, 4, 5, 6, 7}, i);
+        }
+        map.snapshot(file, ByteSerializer.BYTES, ByteSerializer.INTEGER);
+
+        try (MappedCustomHashMap<byte[], Integer> mapped =
+                     MappedCustomHashMap.open(file, ByteSerializer.BYTES, ByteSerializer.INTEGER)) {
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, mapped.get(new byte[] {(byte) i, (byte) (i >>> 8), 1, 2, 3, 4, 5, 6, 7}));
+            }
+            assertFalse(mapped.containsKey(new byte[] {1}));
+        }
+    }
+
+    @Test
+    @DisplayName("Test failed snapshot leaves no temporary file")
+    void testFailedWriteRemovesTemporaryFile() throws IOException {
+        Path file = dir.resolve("map.snapshot");
+        ByteSerializer<String> broken = new ByteSerializer<>() {
+            @Override
+            public int size(String value) {
+                return ByteSerializer.STRING.size(value);
+            }
+
+            @Override
+            public void write(String value, ByteBuffer buffer) {
+                if (value.equals("value-50")) {
+                    throw new IllegalStateException("broken serializer");
+                }
+                ByteSerializer.STRING.write(value, buffer);
+            }
+
+            @Override
+            public String read(ByteBuffer buffer) {
+                return ByteSerializer.STRING.read(buffer);
+            }
+        };
+
+        assertThrows(IllegalStateException.class,
+                () -> sampleMap(100).snapshot(file, ByteSerializer.STRING, broken));
+        assertFalse(Files.exists(dir.resolve("map.snapshot.tmp")));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    @DisplayName("Test empty map snapshot")
+    void testEmptyMap() throws IOException {
+        Path file = dir.resolve("empty.snapshot");
+        new CustomHashMap<String, String>().snapshot(file, ByteSerializer.STRING, ByteSerializer.STRING);
+
+        assertTrue(CustomHashMap.load(file, ByteSerializer.STRING, ByteSerializer.STRING).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test corrupted snapshot is rejected")
+    void testCorruptedSnapshot() throws IOException {
+        Path file = dir.resolve("map.snapshot");
+        sampleMap(100).snapshot(file, ByteSerializer.STRING, ByteSerializer.STRING);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), Files.size(file) - 3);
+        }
+
+        IOException e = assertThrows(IOException.class,
+                () -> MappedCustomHashMap.open(file, ByteSerializer.STRING, ByteSerializer.STRING));
+        assertTrue(e.getMessage().contains("checksum"));
+    }
+
+    @Test
+    @DisplayName("Test truncated snapshot is rejected")
+    void testTruncatedSnapshot() throws IOException {
+        Path file = dir.resolve("map.snapshot");
+        sampleMap(100).snapshot(file, ByteSerializer.STRING, ByteSerializer.STRING);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 10);
+        }
+
+        assertThrows(IOException.class,
+                () -> CustomHashMap.load(file, ByteSerializer.STRING, ByteSerializer.STRING));
+    }
+}
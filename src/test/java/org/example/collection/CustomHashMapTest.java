@@ -4,6 +4,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+
 import static org.junit.jupiter.api.Assertions.*;
 class CustomHashMapTest {
     private CustomHashMap<String, Integer> map;
@@ -184,4 +193,970 @@ class CustomHashMapTest {
             assertEquals(i * 10, resizeMap.get(i));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Test Tree Balance With Sorted Keys")
+    void testTreeBalanceWithSortedKeys() {
+        CustomHashMap<CollidingKey, Integer> treeMap = new CustomHashMap<>();
+
+        for (int i = 0; i < 1000; i++) {
+            treeMap.put(new CollidingKey(i), i);
+        }
+
+        assertTrue(treeMap.checkTreeInvariants());
+        assertEquals(1000, treeMap.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, treeMap.get(new CollidingKey(i)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test Tree Balance After Removals")
+    void testTreeBalanceAfterRemovals() {
+        CustomHashMap<CollidingKey, Integer> treeMap = new CustomHashMap<>();
+        java.util.Random random = new java.util.Random(42);
+
+        for (int i = 0; i < 500; i++) {
+            treeMap.put(new CollidingKey(random.nextInt(1000)), i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            treeMap.remove(new CollidingKey(random.nextInt(1000)));
+            assertTrue(treeMap.checkTreeInvariants());
+        }
+        for (int i = 0; i < 1000; i++) {
+            treeMap.remove(new CollidingKey(i));
+        }
+
+        assertTrue(treeMap.isEmpty());
+        assertTrue(treeMap.checkTreeInvariants());
+    }
+
+    @Test
+    @DisplayName("Test Resize Splits Tree Bins")
+    void testResizeSplitsTreeBins() {
+        CustomHashMap<CollidingKey, Integer> splitMap = new CustomHashMap<>();
+
+        for (int i = 0; i < 40; i++) {
+            splitMap.put(new CollidingKey(i, (i % 2) * 128), i);
+        }
+        for (int i = 40; i < 400; i++) {
+            splitMap.put(new CollidingKey(i, i * 7), i);
+        }
+
+        assertTrue(splitMap.checkTreeInvariants());
+        assertEquals(400, splitMap.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i, splitMap.get(new CollidingKey(i, (i % 2) * 128)));
+        }
+        for (int i = 40; i < 400; i++) {
+            assertEquals(i, splitMap.get(new CollidingKey(i, i * 7)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test Presized Map")
+    void testPresizedMap() {
+        CustomHashMap<Integer, Integer> presized = new CustomHashMap<>(1000);
+        int capacity = presized.capacity();
+
+        for (int i = 0; i < 1000; i++) {
+            presized.put(i, i);
+        }
+
+        assertEquals(2048, capacity);
+        assertEquals(capacity, presized.capacity());
+        assertEquals(1000, presized.size());
+    }
+
+    @Test
+    @DisplayName("Test Custom Capacity And Load Factor")
+    void testCustomCapacityAndLoadFactor() {
+        CustomHashMap<Integer, Integer> custom = new CustomHashMap<>(100, 0.5f);
+        assertEquals(128, custom.capacity());
+
+        for (int i = 0; i < 65; i++) {
+            custom.put(i, i);
+        }
+        assertEquals(256, custom.capacity());
+
+        assertThrows(IllegalArgumentException.class, () -> new CustomHashMap<Integer, Integer>(-1, 0.75f));
+        assertThrows(IllegalArgumentException.class, () -> new CustomHashMap<Integer, Integer>(16, 0f));
+    }
+
+    @Test
+    @DisplayName("Test ensureCapacity and trimToSize")
+    void testEnsureCapacityAndTrimToSize() {
+        CustomHashMap<CollidingKey, Integer> sized = new CustomHashMap<>();
+        for (int i = 0; i < 30; i++) {
+            sized.put(new CollidingKey(i, i % 3), i);
+        }
+
+        sized.ensureCapacity(10_000);
+        assertEquals(16384, sized.capacity());
+        assertTrue(sized.checkTreeInvariants());
+
+        for (int i = 0; i < 30; i += 2) {
+            sized.remove(new CollidingKey(i, i % 3));
+        }
+        sized.trimToSize();
+
+        assertEquals(32, sized.capacity());
+        assertTrue(sized.checkTreeInvariants());
+        assertEquals(15, sized.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i % 2 == 0 ? null : i, sized.get(new CollidingKey(i, i % 3)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test Iteration Over Lists And Trees")
+    void testIteration() {
+        CustomHashMap<CollidingKey, Integer> mixed = new CustomHashMap<>();
+        for (int i = 0; i < 300; i++) {
+            mixed.put(new CollidingKey(i, i < 100 ? 7 : i), i);
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        for (Map.Entry<CollidingKey, Integer> entry : mixed.entrySet()) {
+            assertEquals(entry.getKey().id, entry.getValue());
+            assertTrue(seen.add(entry.getValue()));
+        }
+        assertEquals(300, seen.size());
+
+        int[] sum = new int[1];
+        mixed.forEach((key, value) -> sum[0] += value);
+        assertEquals(299 * 300 / 2, sum[0]);
+
+        long keyCount = mixed.keySet().stream().count();
+        assertEquals(300, keyCount);
+        assertEquals(300, mixed.values().size());
+    }
+
+    @Test
+    @DisplayName("Test Iterator remove()")
+    void testIteratorRemove() {
+        CustomHashMap<CollidingKey, Integer> mixed = new CustomHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            mixed.put(new CollidingKey(i, i % 2 == 0 ? 7 : i), i);
+        }
+
+        Iterator<Integer> iterator = mixed.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 3 == 0) {
+                iterator.remove();
+            }
+        }
+
+        assertEquals(133, mixed.size());
+        assertTrue(mixed.checkTreeInvariants());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i % 3 == 0 ? null : i, mixed.get(new CollidingKey(i, i % 2 == 0 ? 7 : i)));
+        }
+        assertThrows(IllegalStateException.class, () -> {
+            Iterator<Integer> fresh = mixed.values().iterator();
+            fresh.remove();
+        });
+    }
+
+    @Test
+    @DisplayName("Test Fail-Fast Iteration")
+    void testFailFastIteration() {
+        for (int i = 0; i < 10; i++) {
+            map.put("k" + i, i);
+        }
+
+        Iterator<String> iterator = map.keySet().iterator();
+        iterator.next();
+        map.put("new", 100);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+
+        assertThrows(ConcurrentModificationException.class,
+                () -> map.forEach((key, value) -> map.remove(key)));
+    }
+
+    @Test
+    @DisplayName("Test Views And clear()")
+    void testViewsAndClear() {
+        map.put("a", 1);
+        map.put("b", 2);
+
+        assertTrue(map.keySet().contains("a"));
+        assertFalse(map.keySet().contains("c"));
+        assertTrue(map.entrySet().contains(Map.entry("b", 2)));
+        assertFalse(map.entrySet().contains(Map.entry("b", 3)));
+
+        assertTrue(map.keySet().remove("a"));
+        assertEquals(1, map.size());
+
+        map.entrySet().iterator().next().setValue(20);
+        assertEquals(20, map.get("b"));
+
+        map.values().clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("b"));
+    }
+
+    @Test
+    @DisplayName("Test replaceAll() Over List And Tree Bins")
+    void testReplaceAll() {
+        CustomHashMap<CollidingKey, Integer> map = new CustomHashMap<>();
+        for (int i = 0; i < 40; i++) {
+            map.put(new CollidingKey(i, i % 2 == 0 ? 7 : i), i);
+        }
+        map.replaceAll((key, value) -> value * 2);
+
+        assertEquals(40, map.size());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(i * 2, map.get(new CollidingKey(i, i % 2 == 0 ? 7 : i)));
+        }
+        assertThrows(ConcurrentModificationException.class,
+                () -> map.replaceAll((key, value) -> map.remove(key)));
+    }
+
+    @Test
+    @DisplayName("Test Parallel Stream And Spliterator")
+    void testParallelStream() {
+        CustomHashMap<Integer, Integer> big = new CustomHashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            big.put(i, i);
+        }
+
+        long sum = big.entryStream().parallel().mapToLong(Map.Entry::getValue).sum();
+        assertEquals(99_999L * 100_000 / 2, sum);
+        assertEquals(100_000, big.keySet().parallelStream().distinct().count());
+
+        java.util.Spliterator<Integer> spliterator = big.values().spliterator();
+        assertEquals(100_000, spliterator.estimateSize());
+        java.util.Spliterator<Integer> half = spliterator.trySplit();
+        assertNotNull(half);
+        assertEquals(50_000, half.estimateSize());
+        long[] count = new long[1];
+        half.forEachRemaining(value -> count[0]++);
+        spliterator.forEachRemaining(value -> count[0]++);
+        assertEquals(100_000, count[0]);
+    }
+
+    @Test
+    @DisplayName("Test Parallel Bulk Operations")
+    void testParallelBulkOperations() {
+        CustomHashMap<Integer, Integer> big = new CustomHashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            big.put(i, i);
+        }
+
+        Long total = big.reduce(1000, (key, value) -> (long) value, Long::sum);
+        assertEquals(99_999L * 100_000 / 2, total);
+        assertEquals(total, big.reduce(Long.MAX_VALUE, (key, value) -> (long) value, Long::sum));
+
+        Integer found = big.search(1000, (key, value) -> value == 77_777 ? key : null);
+        assertEquals(77_777, found);
+        assertNull(big.search(1000, (key, value) -> value < 0 ? key : null));
+
+        java.util.concurrent.atomic.LongAdder visited = new java.util.concurrent.atomic.LongAdder();
+        big.forEach(1000, (key, value) -> visited.increment());
+        assertEquals(100_000, visited.sum());
+    }
+
+    @Test
+    @DisplayName("Test putAll() Grows The Table Once")
+    void testPutAll() {
+        CustomHashMap<String, Integer> source = new CustomHashMap<>();
+        Map<String, Integer> plain = new java.util.HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            source.put("k" + i, i);
+            plain.put("p" + i, i);
+        }
+
+        map.put("k0", -1);
+        map.putAll(source);
+        assertEquals(2048, map.capacity());
+        assertEquals(1000, map.size());
+        assertEquals(0, map.get("k0"));
+
+        map.putAll(plain);
+        assertEquals(2000, map.size());
+        assertEquals(999, map.get("p999"));
+
+        String[] keys = {"a", "b", "a"};
+        Integer[] values = {1, 2, 3};
+        map.putAll(keys, values);
+        assertEquals(2002, map.size());
+        assertEquals(3, map.get("a"));
+        assertThrows(IllegalArgumentException.class, () -> map.putAll(keys, new Integer[2]));
+    }
+
+    @Test
+    @DisplayName("Test Parallel putAll() Matches Sequential")
+    void testParallelPutAll() {
+        int n = 50_000;
+        CollidingKey[] keys = new CollidingKey[n];
+        Integer[] values = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            // a few hot bins get treeified, and every key appears twice
+            keys[i] = new CollidingKey(i % (n / 2), i % 10 == 0 ? 7 : i % (n / 2));
+            values[i] = i;
+        }
+        CustomHashMap<CollidingKey, Integer> parallel = new CustomHashMap<>();
+        parallel.put(new CollidingKey(-1), -1);
+        parallel.putAll(1000, keys, values);
+        CustomHashMap<CollidingKey, Integer> sequential = new CustomHashMap<>();
+        sequential.put(new CollidingKey(-1), -1);
+        sequential.putAll(keys, values);
+
+        assertEquals(n / 2 + 1, parallel.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < n / 2; i++) {
+            assertEquals(i + n / 2, parallel.get(keys[i]));
+        }
+        assertEquals(-1, parallel.get(new CollidingKey(-1)));
+        assertTrue(parallel.checkTreeInvariants());
+    }
+
+    @Test
+    @DisplayName("Test Parallel putAll() With One And Two Keys")
+    void testParallelPutAllSmallBatch() {
+        CustomHashMap<String, Integer> one = new CustomHashMap<>(64);
+        one.putAll(0, new String[] {"a"}, new Integer[] {1});
+        assertEquals(Map.of("a", 1), one);
+
+        CustomHashMap<String, Integer> two = new CustomHashMap<>(64);
+        two.put("b", 0);
+        two.putAll(0, new String[] {"a", "b"}, new Integer[] {1, 2});
+        assertEquals(Map.of("a", 1, "b", 2), two);
+    }
+
+    @Test
+    @DisplayName("Test getAll() And removeAll()")
+    void testGetAllAndRemoveAll() {
+        for (int i = 0; i < 5000; i++) {
+            map.put("k" + i, i);
+        }
+        java.util.List<String> wanted = new java.util.ArrayList<>();
+        for (int i = 0; i < 3000; i += 2) {
+            wanted.add("k" + i);
+            wanted.add("missing" + i);
+        }
+
+        CustomHashMap<String, Integer> found = map.getAll(wanted);
+        assertEquals(1500, found.size());
+        assertEquals(2998, found.get("k2998"));
+        assertNull(found.get("missing0"));
+
+        String[] keys = wanted.toArray(new String[0]);
+        Integer[] values = new Integer[keys.length];
+        assertEquals(1500, map.getAll(keys, values));
+        assertEquals(4, values[4]);
+        assertNull(values[5]);
+
+        assertEquals(1500, map.removeAll(wanted));
+        assertEquals(3500, map.size());
+        assertNull(map.get("k0"));
+        assertEquals(1, map.get("k1"));
+    }
+
+    @Test
+    @DisplayName("Test containsKey(), getOrDefault() And Null Values")
+    void testContainsKeyAndGetOrDefault() {
+        map.put("nullValue", null);
+
+        assertTrue(map.containsKey("nullValue"));
+        assertFalse(map.containsKey("absent"));
+        assertNull(map.getOrDefault("nullValue", 5));
+        assertEquals(5, map.getOrDefault("absent", 5));
+        assertNull(map.put("nullValue", 1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    @DisplayName("Test putIfAbsent() And replace()")
+    void testPutIfAbsentAndReplace() {
+        assertNull(map.putIfAbsent("a", 1));
+        assertEquals(1, map.putIfAbsent("a", 2));
+        map.put("b", null);
+        assertNull(map.putIfAbsent("b", 3));
+        assertEquals(3, map.get("b"));
+
+        assertNull(map.replace("absent", 1));
+        assertFalse(map.containsKey("absent"));
+        assertEquals(1, map.replace("a", 10));
+        assertFalse(map.replace("a", 1, 20));
+        assertTrue(map.replace("a", 10, 20));
+        assertEquals(20, map.get("a"));
+    }
+
+    @Test
+    @DisplayName("Test computeIfAbsent(), computeIfPresent() And compute()")
+    void testCompute() {
+        assertEquals(3, map.computeIfAbsent("abc", String::length));
+        assertEquals(3, map.computeIfAbsent("abc", key -> 100));
+        assertNull(map.computeIfAbsent("none", key -> null));
+        assertFalse(map.containsKey("none"));
+
+        assertEquals(4, map.computeIfPresent("abc", (key, value) -> value + 1));
+        assertNull(map.computeIfPresent("missing", (key, value) -> 1));
+        assertNull(map.computeIfPresent("abc", (key, value) -> null));
+        assertFalse(map.containsKey("abc"));
+
+        assertEquals(1, map.compute("c", (key, value) -> value == null ? 1 : value + 1));
+        assertEquals(2, map.compute("c", (key, value) -> value == null ? 1 : value + 1));
+        assertNull(map.compute("c", (key, value) -> null));
+        assertTrue(map.isEmpty());
+
+        assertThrows(ConcurrentModificationException.class,
+                () -> map.computeIfAbsent("x", key -> map.put("y", 1)));
+    }
+
+    @Test
+    @DisplayName("Test merge() As A Counter")
+    void testMerge() {
+        String[] words = {"a", "b", "a", "c", "a", "b"};
+        for (String word : words) {
+            map.merge(word, 1, Integer::sum);
+        }
+        assertEquals(3, map.get("a"));
+        assertEquals(2, map.get("b"));
+        assertEquals(1, map.get("c"));
+
+        assertNull(map.merge("c", 1, (a, b) -> null));
+        assertFalse(map.containsKey("c"));
+        assertThrows(NullPointerException.class, () -> map.merge("a", null, Integer::sum));
+    }
+
+    @Test
+    @DisplayName("Test Compute Methods On List And Tree Bins")
+    void testComputeOnTreeBins() {
+        CustomHashMap<CollidingKey, Integer> colliding = new CustomHashMap<>(64);
+        for (int i = 0; i < 40; i++) {
+            colliding.merge(new CollidingKey(i % 20), 1, Integer::sum);
+            colliding.computeIfAbsent(new CollidingKey(100 + i), key -> key.id);
+        }
+        assertEquals(60, colliding.size());
+        assertEquals(2, colliding.get(new CollidingKey(5)));
+        assertEquals(139, colliding.get(new CollidingKey(139)));
+        assertTrue(colliding.checkTreeInvariants());
+
+        for (int i = 0; i < 20; i++) {
+            colliding.compute(new CollidingKey(i), (key, value) -> null);
+            colliding.computeIfPresent(new CollidingKey(100 + i), (key, value) -> null);
+        }
+        assertEquals(20, colliding.size());
+        assertFalse(colliding.containsKey(new CollidingKey(0)));
+        assertTrue(colliding.containsKey(new CollidingKey(120)));
+        assertTrue(colliding.checkTreeInvariants());
+    }
+
+    @Test
+    @DisplayName("Test Drop-In java.util.Map")
+    void testImplementsMap() {
+        Map<String, Integer> custom = new CustomHashMap<>();
+        Map<String, Integer> reference = new java.util.HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            custom.put("k" + i, i);
+            reference.put("k" + i, i);
+        }
+        custom.put(null, -1);
+        reference.put(null, -1);
+
+        assertEquals(reference, custom);
+        assertEquals(custom, reference);
+        assertEquals(reference.hashCode(), custom.hashCode());
+        assertTrue(custom.containsValue(499));
+        assertFalse(custom.containsValue(500));
+        assertEquals(-1, custom.get(null));
+        assertNull(custom.get(42));
+        assertNull(custom.remove(42));
+
+        custom.entrySet().removeIf(entry -> entry.getValue() != null && entry.getValue() % 2 == 0);
+        reference.entrySet().removeIf(entry -> entry.getValue() != null && entry.getValue() % 2 == 0);
+        assertEquals(reference, custom);
+    }
+
+    @Test
+    @DisplayName("Test Tree Bins With Keys That Are Not Comparable")
+    void testNonComparableKeysInTreeBins() {
+        CustomHashMap<PlainKey, Integer> plain = new CustomHashMap<>(64);
+        for (int i = 0; i < 200; i++) {
+            // ten distinct hashes share one bin, twenty keys per hash
+            plain.put(new PlainKey(i, (i % 10) << 8), i);
+        }
+        assertEquals(200, plain.size());
+        assertTrue(plain.checkTreeInvariants());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, plain.get(new PlainKey(i, (i % 10) << 8)));
+        }
+        assertNull(plain.get(new PlainKey(500, 0)));
+
+        for (int i = 0; i < 200; i += 3) {
+            assertEquals(i, plain.remove(new PlainKey(i, (i % 10) << 8)));
+        }
+        assertTrue(plain.checkTreeInvariants());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i % 3 == 0 ? null : i, plain.get(new PlainKey(i, (i % 10) << 8)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test Tree Bins With Mixed Key Classes")
+    void testMixedKeysInTreeBins() {
+        CustomHashMap<Object, Integer> mixed = new CustomHashMap<>(64);
+        for (int i = 0; i < 30; i++) {
+            mixed.put(new CollidingKey(i), i);
+            mixed.put(new PlainKey(i, 42), 100 + i);
+        }
+        mixed.put(null, -1);
+        assertEquals(61, mixed.size());
+        assertTrue(mixed.checkTreeInvariants());
+        assertEquals(7, mixed.get(new CollidingKey(7)));
+        assertEquals(107, mixed.get(new PlainKey(7, 42)));
+        assertEquals(-1, mixed.get(null));
+    }
+
+    @Test
+    @DisplayName("Test Colliding Strings Switch The Map To Seeded Hashing")
+    void testHashFloodingRehash() {
+        // every combination of "Aa" and "BB" has the same String.hashCode()
+        java.util.List<String> flood = new java.util.ArrayList<>();
+        flood.add("");
+        for (int round = 0; round < 12; round++) {
+            java.util.List<String> next = new java.util.ArrayList<>();
+            for (String prefix : flood) {
+                next.add(prefix + "Aa");
+                next.add(prefix + "BB");
+            }
+            flood = next;
+        }
+        assertEquals(1, flood.stream().mapToInt(String::hashCode).distinct().count());
+
+        long rehashesBefore = CustomHashMap.hashFloodRehashCount();
+        CustomHashMap<String, Integer> attacked = new CustomHashMap<>();
+        for (int i = 0; i < flood.size(); i++) {
+            attacked.put(flood.get(i), i);
+        }
+
+        assertTrue(attacked.isSeededHashing());
+        assertEquals(rehashesBefore + 1, CustomHashMap.hashFloodRehashCount());
+        assertEquals(4096, attacked.size());
+        for (int i = 0; i < flood.size(); i++) {
+            assertEquals(i, attacked.get(flood.get(i)));
+        }
+        assertTrue(attacked.checkTreeInvariants());
+
+        // the copy rehashes the keys with its own hash and defends itself too
+        CustomHashMap<String, Integer> copy = new CustomHashMap<>();
+        copy.putAll(attacked);
+        assertTrue(copy.isSeededHashing());
+        assertEquals(attacked, copy);
+    }
+
+    @Test
+    @DisplayName("Test Keys With Equal hashCode() Keep The Tree Instead Of Seeding")
+    void testDeepBinWithoutStringsKeepsTree() {
+        // seeding mixes hashCode(), so it cannot split these keys
+        long rehashesBefore = CustomHashMap.hashFloodRehashCount();
+        CustomHashMap<CollidingKey, Integer> map = new CustomHashMap<>();
+        for (int i = 0; i < 4096; i++) {
+            map.put(new CollidingKey(i), i);
+        }
+
+        assertFalse(map.isSeededHashing());
+        assertEquals(rehashesBefore, CustomHashMap.hashFloodRehashCount());
+        assertEquals(4096, map.size());
+        for (int i = 0; i < 4096; i++) {
+            assertEquals(i, map.get(new CollidingKey(i)));
+        }
+        assertTrue(map.checkTreeInvariants());
+    }
+
+    @Test
+    @DisplayName("Test putAll() Keeps Every Key When It Triggers The Flood Rehash")
+    void testPutAllTriggeringFloodRehash() {
+        java.util.List<String> flood = new java.util.ArrayList<>();
+        flood.add("");
+        for (int round = 0; round < 8; round++) {
+            java.util.List<String> next = new java.util.ArrayList<>();
+            for (String prefix : flood) {
+                next.add(prefix + "Aa");
+                next.add(prefix + "BB");
+            }
+            flood = next;
+        }
+        CustomHashMap<String, Integer> target = new CustomHashMap<>();
+        CustomHashMap<String, Integer> source = new CustomHashMap<>();
+        for (int i = 0; i < 90; i++) {
+            target.put(flood.get(i), i);
+            source.put(flood.get(90 + i), 90 + i);
+        }
+        assertFalse(target.isSeededHashing());
+        assertFalse(source.isSeededHashing());
+
+        target.putAll(source);
+        assertTrue(target.isSeededHashing());
+        assertEquals(180, target.size());
+        for (int i = 0; i < 180; i++) {
+            assertEquals(i, target.get(flood.get(i)));
+        }
+        assertTrue(target.checkTreeInvariants());
+    }
+
+    @Test
+    @DisplayName("Test Seeded Hashing From The Start")
+    void testSeededHashing() {
+        CustomHashMap<String, Integer> seeded = new CustomHashMap<>(16, 0.75f, true);
+        CustomHashMap<String, Integer> other = new CustomHashMap<>(16, 0.75f, true);
+        assertTrue(seeded.isSeededHashing());
+        for (int i = 0; i < 1000; i++) {
+            seeded.put("key" + i, i);
+        }
+        seeded.put(null, -1);
+        other.putAll(seeded);
+
+        assertEquals(1001, other.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, seeded.get("key" + i));
+            assertEquals(i, other.get("key" + i));
+        }
+        assertEquals(-1, other.get(null));
+        assertNotEquals(seeded.hash("key1"), other.hash("key1"));
+    }
+
+    @Test
+    @DisplayName("Test statistics()")
+    void testStatistics() {
+        CustomHashMap<CollidingKey, Integer> shaped = new CustomHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            shaped.put(new CollidingKey(i, i), i);
+        }
+        for (int i = 0; i < 20; i++) {
+            shaped.put(new CollidingKey(1000 + i), i);
+        }
+        shaped.get(new CollidingKey(5, 5));
+        shaped.get(new CollidingKey(-1, 5));
+
+        CustomHashMapStats stats = shaped.statistics();
+        assertEquals(120, stats.getSize());
+        assertEquals(256, stats.getCapacity());
+        assertEquals(0.75f, stats.getLoadFactor());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0.5, stats.getHitRate());
+        assertEquals(1, stats.getTreeifiedBins());
+        // keys 42 and 298 share the tree bin with the twenty colliding keys
+        assertEquals(21, stats.getMaxChainLength());
+        assertEquals(100, stats.getUsedBins());
+        assertEquals(1.2, stats.getAverageChainLength(), 1e-9);
+        assertEquals(4, stats.getResizeCount());
+        assertTrue(stats.getResizeTimeNanos() > 0);
+        assertTrue(stats.toString().contains("treeBins=1"));
+
+        shaped.resetStatistics();
+        assertEquals(0, shaped.statistics().getHitCount());
+        assertEquals(0, shaped.statistics().getResizeCount());
+    }
+
+    @Test
+    @DisplayName("Test JMX Registration")
+    void testRegisterMBean() throws Exception {
+        map.put("a", 1);
+        map.get("a");
+        map.get("b");
+        javax.management.ObjectName name = map.registerMBean("test-map");
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(1L, server.getAttribute(name, "HitCount"));
+            assertEquals(1L, server.getAttribute(name, "MissCount"));
+            assertEquals(1, server.getAttribute(name, "Size"));
+            javax.management.openmbean.CompositeData stats =
+                    (javax.management.openmbean.CompositeData) server.getAttribute(name, "Statistics");
+            assertEquals(16, stats.get("capacity"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    @DisplayName("Test Tree Bins Turn Back Into Lists On Removal")
+    void testUntreeifyOnRemove() {
+        CustomHashMap<CollidingKey, Integer> colliding = new CustomHashMap<>(64, 0.75f);
+        for (int i = 0; i < 20; i++) {
+            colliding.put(new CollidingKey(i), i);
+        }
+        assertEquals(1, colliding.statistics().getTreeifiedBins());
+
+        for (int i = 0; i < 13; i++) {
+            colliding.remove(new CollidingKey(i));
+        }
+        assertEquals(1, colliding.statistics().getTreeifiedBins());
+        colliding.remove(new CollidingKey(13));
+        assertEquals(0, colliding.statistics().getTreeifiedBins());
+        for (int i = 14; i < 20; i++) {
+            assertEquals(i, colliding.get(new CollidingKey(i)));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            colliding.put(new CollidingKey(i), i);
+        }
+        // iterator removal leaves the bin alone so that iteration can go on
+        Iterator<CollidingKey> it = colliding.keySet().iterator();
+        int seen = 0;
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+            seen++;
+        }
+        assertEquals(20, seen);
+        assertTrue(colliding.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test shrink() And Auto-Shrink")
+    void testShrink() {
+        for (int i = 0; i < 1000; i++) {
+            map.put("key" + i, i);
+        }
+        assertEquals(2048, map.capacity());
+        assertFalse(map.shrink());
+        for (int i = 10; i < 1000; i++) {
+            map.remove("key" + i);
+        }
+        assertTrue(map.shrink());
+        assertEquals(1024, map.capacity());
+        assertEquals(10, map.size());
+        assertEquals(9, map.get("key9"));
+
+        CustomHashMap<Integer, Integer> shrinking = new CustomHashMap<>();
+        shrinking.setAutoShrink(0.125f);
+        for (int i = 0; i < 10_000; i++) {
+            shrinking.put(i, i);
+        }
+        assertEquals(16_384, shrinking.capacity());
+        for (int i = 10; i < 10_000; i++) {
+            shrinking.remove(i);
+        }
+        // ten entries sit above the low-water mark of a 64-bin table
+        assertEquals(64, shrinking.capacity());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, shrinking.get(i));
+        }
+        shrinking.setAutoShrink(0);
+        for (int i = 0; i < 10; i++) {
+            shrinking.put(i + 100, i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> shrinking.setAutoShrink(0.5f));
+        assertThrows(IllegalArgumentException.class, () -> shrinking.setAutoShrink(Float.NaN));
+    }
+
+    @Test
+    @DisplayName("Test Incremental Resize")
+    void testIncrementalResize() {
+        CustomHashMap<Integer, Integer> map = new CustomHashMap<>();
+        map.setIncrementalResize(true);
+        for (int i = 0; i < 13; i++) {
+            map.put(i, i);
+        }
+        // the table doubles at once, the old bins move with the next updates
+        assertEquals(32, map.capacity());
+        for (int i = 0; i < 13; i++) {
+            assertEquals(i, map.get(i));
+        }
+
+        Map<Integer, Integer> expected = new HashMap<>();
+        expected.putAll(map);
+        Random random = new Random(11);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(20_000);
+            switch (random.nextInt(4)) {
+                case 0 -> assertEquals(expected.remove(key), map.remove(key));
+                case 1 -> assertEquals(expected.get(key), map.get(key));
+                case 2 -> assertEquals(expected.merge(key, 1, Integer::sum), map.merge(key, 1, Integer::sum));
+                default -> assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected, map);
+        assertTrue(map.checkTreeInvariants());
+
+        CustomHashMap<CollidingKey, Integer> trees = new CustomHashMap<>();
+        trees.setIncrementalResize(true);
+        for (int i = 0; i < 2_000; i++) {
+            trees.put(new CollidingKey(i, i % 64), i);
+            assertEquals(i, trees.get(new CollidingKey(i, i % 64)));
+            if (i % 3 == 0) {
+                trees.remove(new CollidingKey(i / 2, (i / 2) % 64));
+            }
+        }
+        CustomHashMap<CollidingKey, Integer> copy = new CustomHashMap<>();
+        copy.putAll(trees);
+        assertEquals(trees, copy);
+        assertTrue(trees.checkTreeInvariants());
+
+        trees.setIncrementalResize(false);
+        trees.clear();
+        assertTrue(trees.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test Whole-Map Reads Leave A Pending Resize In Place")
+    void testReadsDuringIncrementalResize() {
+        CustomHashMap<Integer, Integer> map = new CustomHashMap<>();
+        map.setIncrementalResize(true);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 13; i++) {
+            map.put(i, i);
+            expected.put(i, i);
+        }
+        assertTrue(map.isResizePending());
+
+        assertEquals(13, map.statistics().getSize());
+        String text = map.toString();
+        assertEquals(Set.of(expected.toString().replaceAll("[{}]", "").split(", ")),
+                Set.of(text.substring(1, text.length() - 1).split(", ")));
+        assertTrue(map.containsValue(12));
+        Map<Integer, Integer> seen = new HashMap<>();
+        map.forEach(seen::put);
+        assertEquals(expected, seen);
+        assertEquals(expected, new HashMap<>(map));
+        assertEquals(13, map.keySet().stream().count());
+        assertEquals(78, map.values().parallelStream().mapToInt(Integer::intValue).sum());
+        assertEquals(78, map.<Integer>reduce(1, (key, value) -> value, Integer::sum));
+        assertEquals(12, map.<Integer>search(1, (key, value) -> value == 12 ? key : null));
+        assertEquals(expected, map.freeze());
+        assertTrue(map.checkTreeInvariants());
+        assertTrue(map.isResizePending());
+
+        // updates that add or remove nothing do not move bins under an iterator
+        int visited = 0;
+        for (Integer key : map.keySet()) {
+            map.put(key, -key);
+            map.get(key);
+            map.remove(key + 100);
+            visited++;
+        }
+        assertEquals(13, visited);
+        assertTrue(map.isResizePending());
+        assertEquals(-5, map.get(5));
+
+        Iterator<Integer> keys = map.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next() % 2 == 0) {
+                keys.remove();
+            }
+        }
+        assertEquals(6, map.size());
+        assertTrue(map.isResizePending());
+
+        map.put(100, 100);
+        map.remove(1);
+        assertEquals(6, map.size());
+        assertEquals(100, map.get(100));
+        assertEquals(-3, map.get(3));
+    }
+
+    @Test
+    @DisplayName("Test Tree Bins Are Ordered By Hash First")
+    void testTreeBinsOrderedByHash() {
+        CustomHashMap<CountingKey, Integer> map = new CustomHashMap<>();
+        // 16 bins of about a dozen keys whose hashes differ only above the bin bits
+        IntFunction<CountingKey> key = i -> new CountingKey(i, i << 16 | (i & ~15));
+        for (int i = 0; i < 200; i++) {
+            map.put(key.apply(i), i);
+        }
+        assertEquals(16, map.statistics().getTreeifiedBins());
+        assertTrue(map.checkTreeInvariants());
+
+        CountingKey.comparisons = 0;
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, map.get(key.apply(i)));
+            assertNull(map.get(key.apply(i + 200)));
+        }
+        assertEquals(0, CountingKey.comparisons);
+
+        for (int i = 0; i < 200; i += 2) {
+            assertEquals(i, map.remove(key.apply(i)));
+        }
+        assertEquals(0, CountingKey.comparisons);
+        assertEquals(100, map.size());
+        assertTrue(map.checkTreeInvariants());
+    }
+
+    static final class CollidingKey implements Comparable<CollidingKey> {
+        final int id;
+        final int hash;
+
+        CollidingKey(int id) {
+            this(id, 42);
+        }
+
+        CollidingKey(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+        }
+
+        @Override
+        public int compareTo(CollidingKey other) {
+            return Integer.compare(id, other.id);
+        }
+
+        @Override
+        public String toString() {
+            return "CollidingKey" + id;
+        }
+    }
+
+    static final class CountingKey implements Comparable<CountingKey> {
+        static int comparisons;
+
+        final int id;
+        final int hash;
+
+        CountingKey(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CountingKey && ((CountingKey) o).id == id;
+        }
+
+        @Override
+        public int compareTo(CountingKey other) {
+            comparisons++;
+            return Integer.compare(id, other.id);
+        }
+    }
+
+    // has no natural order, like byte[] wrappers or plain records
+    static final class PlainKey {
+        final int id;
+        final int hash;
+
+        PlainKey(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PlainKey && ((PlainKey) o).id == id;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMapTest.CollidingKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomHashMultimapTest {
+
+    @Test
+    @DisplayName("Test put(), get(), remove()")
+    void testBasicOperations() {
+        CustomHashMultimap<String, Integer> multimap = new CustomHashMultimap<>();
+        assertTrue(multimap.put("a", 1));
+        multimap.put("a", 2);
+        multimap.put("a", 1);
+        multimap.put("b", null);
+
+        assertEquals(List.of(1, 2, 1), multimap.get("a"));
+        assertEquals(Arrays.asList((Integer) null), multimap.get("b"));
+        assertEquals(List.of(), multimap.get("c"));
+        assertEquals(4, multimap.size());
+        assertEquals(2, multimap.keyCount());
+        assertEquals(3, multimap.count("a"));
+        assertTrue(multimap.containsEntry("b", null));
+        assertFalse(multimap.containsEntry("a", 3));
+
+        assertTrue(multimap.remove("a", 1));
+        assertEquals(List.of(2, 1), multimap.get("a"));
+        assertFalse(multimap.remove("a", 5));
+        assertTrue(multimap.remove("b", null));
+        assertFalse(multimap.containsKey("b"));
+        assertEquals(List.of(2, 1), multimap.removeAll("a"));
+        assertTrue(multimap.isEmpty());
+        assertEquals(0, multimap.keyCount());
+        assertThrows(UnsupportedOperationException.class, () -> multimap.get("a").add(1));
+    }
+
+    @Test
+    @DisplayName("Test Random Operations Match A Map Of Lists")
+    void testAgainstMapOfLists() {
+        CustomHashMultimap<CollidingKey, Integer> multimap = new CustomHashMultimap<>();
+        Map<CollidingKey, List<Integer>> expected = new HashMap<>();
+        Random random = new Random(29);
+        for (int i = 0; i < 100_000; i++) {
+            int id = random.nextInt(1_000);
+            CollidingKey key = new CollidingKey(id, id % 40);
+            int value = random.nextInt(8);
+            if (random.nextInt(4) == 0) {
+                List<Integer> values = expected.get(key);
+                boolean removed = values != null && values.remove((Integer) value);
+                if (values != null && values.isEmpty()) {
+                    expected.remove(key);
+                }
+                assertEquals(removed, multimap.remove(key, value));
+            } else {
+                expected.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+                multimap.put(key, value);
+            }
+        }
+        multimap.trimToSize();
+        assertEquals(expected.size(), multimap.keyCount());
+        assertEquals(expected.values().stream().mapToInt(List::size).sum(), multimap.size());
+        Map<CollidingKey, List<Integer>> actual = new HashMap<>();
+        multimap.forEach((key, value) -> actual.computeIfAbsent(key, k -> new ArrayList<>()).add(value));
+        assertEquals(expected, actual);
+        for (CollidingKey key : expected.keySet()) {
+            assertEquals(expected.get(key), multimap.get(key));
+        }
+    }
+}
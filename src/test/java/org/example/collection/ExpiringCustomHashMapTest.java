@@ -0,0 +1,249 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMapTest.CollidingKey;
+import org.example.collection.ExpiringCustomHashMap.ExpiryPolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringCustomHashMapTest {
+
+    private final AtomicLong time = new AtomicLong(123_456_789L);
+
+    private void advance(Duration duration) {
+        time.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    @DisplayName("Test expire after write hides and then removes entries")
+    void testExpireAfterWrite() {
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_WRITE, time::get);
+        map.put("a", 1);
+        advance(Duration.ofSeconds(5));
+        map.put("b", 2);
+        assertEquals(1, map.get("a"));
+
+        advance(Duration.ofSeconds(6));
+        assertNull(map.get("a"));
+        assertEquals(2, map.get("b"));
+
+        advance(Duration.ofSeconds(2));
+        map.cleanUp();
+        assertEquals(1, map.size());
+        assertEquals(1, map.expiredCount());
+
+        advance(Duration.ofSeconds(10));
+        map.put("c", 3);
+        assertNull(map.get("b"));
+        assertEquals(1, map.size());
+        assertEquals(2, map.expiredCount());
+    }
+
+    @Test
+    @DisplayName("Test expire after access extends the deadline on get()")
+    void testExpireAfterAccess() {
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_ACCESS, time::get);
+        map.put("a", 1);
+        map.put("b", 2);
+        for (int i = 0; i < 5; i++) {
+            advance(Duration.ofSeconds(8));
+            assertEquals(1, map.get("a"));
+        }
+        map.cleanUp();
+
+        assertNull(map.get("b"));
+        assertEquals(1, map.size());
+        assertEquals(1, map.get("a"));
+    }
+
+    @Test
+    @DisplayName("Test expire after access counts every read hit")
+    void testExpireAfterAccessOtherReads() {
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_ACCESS, time::get);
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        for (int i = 0; i < 5; i++) {
+            advance(Duration.ofSeconds(8));
+            assertEquals(1, map.getOrDefault("a", -1));
+            assertEquals(2, map.putIfAbsent("b", -1));
+            assertEquals(3, map.computeIfAbsent("c", key -> -1));
+        }
+        map.cleanUp();
+
+        assertEquals(3, map.size());
+        assertEquals(0, map.expiredCount());
+    }
+
+    @Test
+    @DisplayName("Test expired entries are not in the key and entry views")
+    void testViewsHideExpiredEntries() {
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_WRITE, time::get);
+        map.put("a", 1);
+        advance(Duration.ofSeconds(11));
+
+        assertFalse(map.containsKey("a"));
+        assertFalse(map.keySet().contains("a"));
+        assertFalse(map.entrySet().contains(java.util.Map.entry("a", 1)));
+        assertFalse(map.keySet().remove("a"));
+        assertFalse(map.entrySet().remove(java.util.Map.entry("a", 1)));
+
+        map.put("b", 2);
+        assertTrue(map.keySet().contains("b"));
+        assertTrue(map.entrySet().remove(java.util.Map.entry("b", 2)));
+        assertFalse(map.containsKey("b"));
+    }
+
+    @Test
+    @DisplayName("Test per-entry time to live")
+    void testPerEntryTtl() {
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofMinutes(5), ExpiryPolicy.AFTER_ACCESS, time::get);
+        map.put("short", 1, Duration.ofSeconds(3));
+        map.put("long", 2, Duration.ofDays(3));
+        map.put("default", 3);
+
+        advance(Duration.ofSeconds(2));
+        assertEquals(1, map.get("short"));
+        advance(Duration.ofSeconds(2));
+        assertNull(map.get("short"));
+
+        advance(Duration.ofMinutes(10));
+        map.cleanUp();
+        assertNull(map.get("default"));
+        assertEquals(2, map.get("long"));
+
+        advance(Duration.ofDays(3));
+        map.cleanUp();
+        assertTrue(map.isEmpty());
+        assertEquals(3, map.expiredCount());
+    }
+
+    @Test
+    @DisplayName("Test overwrite resets the deadline")
+    void testOverwriteResetsDeadline() {
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_WRITE, time::get);
+        map.put("a", 1);
+        advance(Duration.ofSeconds(8));
+        map.put("a", 2);
+        advance(Duration.ofSeconds(8));
+        map.cleanUp();
+
+        assertEquals(2, map.get("a"));
+        map.remove("a");
+        advance(Duration.ofSeconds(30));
+        map.cleanUp();
+        assertEquals(0, map.expiredCount());
+    }
+
+    @Test
+    @DisplayName("Test setValue() and replaceAll() reset the deadline")
+    void testEntryUpdatesResetDeadline() {
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_WRITE, time::get);
+        map.put("a", 1);
+        map.put("b", 2);
+        advance(Duration.ofSeconds(8));
+        map.replaceAll((key, value) -> value * 10);
+        advance(Duration.ofSeconds(8));
+        map.entrySet().iterator().next().setValue(42);
+        map.cleanUp();
+        assertEquals(2, map.size());
+
+        advance(Duration.ofSeconds(8));
+        map.cleanUp();
+        assertEquals(1, map.size());
+        assertEquals(42, map.values().iterator().next());
+    }
+
+    @Test
+    @DisplayName("Test expiry of entries in treeified bins")
+    void testExpiryWithTreeBins() {
+        ExpiringCustomHashMap<CollidingKey, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_WRITE, time::get);
+        for (int i = 0; i < 20; i++) {
+            map.put(new CollidingKey(i), i);
+        }
+        advance(Duration.ofSeconds(5));
+        for (int i = 20; i < 40; i++) {
+            map.put(new CollidingKey(i), i);
+        }
+        assertTrue(map.checkTreeInvariants());
+
+        advance(Duration.ofSeconds(7));
+        map.cleanUp();
+        assertEquals(20, map.size());
+        assertNull(map.get(new CollidingKey(0)));
+        assertEquals(39, map.get(new CollidingKey(39)));
+        assertTrue(map.checkTreeInvariants());
+
+        advance(Duration.ofSeconds(10));
+        map.cleanUp();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Test expiry untreeifies bins and shrinks the table")
+    void testExpiryCompactsTable() {
+        ExpiringCustomHashMap<CollidingKey, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_WRITE, time::get);
+        map.setAutoShrink(0.125f);
+        for (int i = 3; i < 200; i++) {
+            map.put(new CollidingKey(i, i % 20 == 0 ? 42 : i), i);
+        }
+        advance(Duration.ofSeconds(5));
+        for (int i = 0; i < 3; i++) {
+            map.put(new CollidingKey(i), i);
+        }
+        assertEquals(1, map.statistics().getTreeifiedBins());
+        assertEquals(512, map.capacity());
+
+        advance(Duration.ofSeconds(7));
+        map.cleanUp();
+        assertEquals(3, map.size());
+        assertEquals(0, map.statistics().getTreeifiedBins());
+        assertEquals(16, map.capacity());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, map.get(new CollidingKey(i)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test compute methods treat expired entries as absent")
+    void testComputeOnExpiredEntries() {
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(10), ExpiryPolicy.AFTER_WRITE, time::get);
+        map.put("a", 1);
+        map.put("b", 2);
+        advance(Duration.ofSeconds(11));
+
+        assertFalse(map.containsKey("a"));
+        assertEquals(0, map.getOrDefault("a", 0));
+        assertEquals(5, map.merge("a", 5, Integer::sum));
+        assertNull(map.putIfAbsent("b", 7));
+        assertEquals(7, map.get("b"));
+
+        advance(Duration.ofSeconds(5));
+        assertTrue(map.containsKey("a"));
+        assertEquals(6, map.merge("a", 1, Integer::sum));
+    }
+
+    @Test
+    @DisplayName("Test invalid time to live")
+    void testInvalidTtl() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ExpiringCustomHashMap<String, Integer>(Duration.ZERO, ExpiryPolicy.AFTER_WRITE));
+        ExpiringCustomHashMap<String, Integer> map =
+                new ExpiringCustomHashMap<>(Duration.ofSeconds(1), ExpiryPolicy.AFTER_WRITE);
+        assertThrows(IllegalArgumentException.class, () -> map.put("a", 1, Duration.ofSeconds(-1)));
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMapTest.CollidingKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatCustomHashMapTest {
+
+    @Test
+    @DisplayName("Test put(), get(), remove()")
+    void testBasicOperations() {
+        FlatCustomHashMap<String, Integer> map = new FlatCustomHashMap<>();
+        assertNull(map.put("one", 1));
+        assertNull(map.put("two", 2));
+        assertEquals(1, map.put("one", 11));
+
+        assertEquals(11, map.get("one"));
+        assertEquals(2, map.get("two"));
+        assertNull(map.get("three"));
+        assertEquals(-1, map.getOrDefault("three", -1));
+        assertTrue(map.containsKey("two"));
+        assertTrue(map.containsValue(11));
+        assertEquals(2, map.size());
+
+        assertEquals(2, map.remove("two"));
+        assertNull(map.remove("two"));
+        assertEquals(1, map.size());
+        assertEquals(Map.of("one", 11), map);
+    }
+
+    @Test
+    @DisplayName("Test Null Keys And Values")
+    void testNulls() {
+        FlatCustomHashMap<String, Integer> map = new FlatCustomHashMap<>();
+        map.put(null, 1);
+        map.put("a", null);
+        assertEquals(1, map.get(null));
+        assertTrue(map.containsKey("a"));
+        assertNull(map.get("a"));
+        assertEquals(1, map.remove(null));
+        assertFalse(map.containsKey(null));
+    }
+
+    @Test
+    @DisplayName("Test Random Operations Match HashMap")
+    void testAgainstHashMap() {
+        FlatCustomHashMap<Integer, Integer> map = new FlatCustomHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected, map);
+        // churn must not grow the table past what the live entries need
+        assertTrue(map.capacity() <= 8192, "capacity " + map.capacity());
+
+        map.trimToSize();
+        assertEquals(expected, map);
+    }
+
+    @Test
+    @DisplayName("Test Keys With Equal Hash Codes")
+    void testCollidingKeys() {
+        FlatCustomHashMap<CollidingKey, Integer> map = new FlatCustomHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            map.put(new CollidingKey(i), i);
+        }
+        for (int i = 0; i < 500; i += 2) {
+            map.remove(new CollidingKey(i));
+        }
+        assertEquals(250, map.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i % 2 == 0 ? null : i, map.get(new CollidingKey(i)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test ensureCapacity() Presizes The Table")
+    void testEnsureCapacity() {
+        FlatCustomHashMap<Integer, Integer> map = new FlatCustomHashMap<>(1000);
+        int capacity = map.capacity();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i);
+        }
+        assertEquals(capacity, map.capacity());
+
+        map.ensureCapacity(10_000);
+        assertTrue(map.capacity() >= 10_000);
+        assertEquals(999, map.get(999));
+        assertThrows(IllegalArgumentException.class, () -> new FlatCustomHashMap<>(-1));
+    }
+
+    @Test
+    @DisplayName("Test Iterator remove() And Fail-Fast")
+    void testIterator() {
+        FlatCustomHashMap<Integer, Integer> map = new FlatCustomHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        Iterator<Map.Entry<Integer, Integer>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Integer> entry = it.next();
+            if (entry.getKey() % 2 == 0) {
+                it.remove();
+            } else {
+                entry.setValue(-entry.getKey());
+            }
+        }
+        assertEquals(50, map.size());
+        assertEquals(-1, map.get(1));
+        assertNull(map.get(2));
+        assertThrows(IllegalStateException.class, map.entrySet().iterator()::remove);
+
+        Iterator<Integer> keys = map.keySet().iterator();
+        keys.next();
+        map.put(1000, 1000);
+        assertThrows(ConcurrentModificationException.class, keys::next);
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMapTest.CollidingKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrozenCustomHashMapTest {
+
+    @Test
+    @DisplayName("Test freeze() Copies Every Entry")
+    void testFreeze() {
+        CustomHashMap<String, Integer> map = new CustomHashMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            map.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        map.put(null, -1);
+        expected.put(null, -1);
+
+        FrozenCustomHashMap<String, Integer> frozen = map.freeze();
+        assertEquals(expected, frozen);
+        assertEquals(frozen, expected);
+        assertEquals(expected.hashCode(), frozen.hashCode());
+        assertEquals(-1, frozen.get(null));
+        assertNull(frozen.get("missing"));
+        assertEquals(7, frozen.getOrDefault("missing", 7));
+
+        map.put("key0", 100);
+        map.remove("key1");
+        assertEquals(0, frozen.get("key0"));
+        assertTrue(frozen.containsKey("key1"));
+    }
+
+    @Test
+    @DisplayName("Test Frozen Map Is Immutable")
+    void testImmutable() {
+        CustomHashMap<String, Integer> map = new CustomHashMap<>();
+        map.put("a", 1);
+        FrozenCustomHashMap<String, Integer> frozen = map.freeze();
+
+        assertThrows(UnsupportedOperationException.class, () -> frozen.put("b", 2));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.remove("missing"));
+        assertThrows(UnsupportedOperationException.class, () -> frozen.merge("a", 1, Integer::sum));
+        assertThrows(UnsupportedOperationException.class, frozen::clear);
+        assertThrows(UnsupportedOperationException.class, () -> frozen.entrySet().iterator().next().setValue(5));
+        assertThrows(UnsupportedOperationException.class, () -> {
+            var it = frozen.keySet().iterator();
+            it.next();
+            it.remove();
+        });
+        assertEquals(Map.of("a", 1), frozen);
+    }
+
+    @Test
+    @DisplayName("Test Freezing Colliding, Seeded And Empty Maps")
+    void testSpecialMaps() {
+        CustomHashMap<CollidingKey, Integer> colliding = new CustomHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            colliding.put(new CollidingKey(i, i % 3), i);
+        }
+        FrozenCustomHashMap<CollidingKey, Integer> frozen = colliding.freeze();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, frozen.get(new CollidingKey(i, i % 3)));
+        }
+        assertNull(frozen.get(new CollidingKey(100, 0)));
+
+        CustomHashMap<String, Integer> seeded = new CustomHashMap<>(16, 0.75f, true);
+        seeded.put("a", 1);
+        seeded.put("b", 2);
+        assertEquals(Map.of("a", 1, "b", 2), seeded.freeze());
+
+        FrozenCustomHashMap<String, Integer> empty = new CustomHashMap<String, Integer>().freeze();
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get("a"));
+    }
+
+    @Test
+    @DisplayName("Test Freezing Skips Expired Entries")
+    void testFreezeExpiring() {
+        AtomicLong time = new AtomicLong();
+        ExpiringCustomHashMap<String, Integer> map = new ExpiringCustomHashMap<>(
+                Duration.ofSeconds(10), ExpiringCustomHashMap.ExpiryPolicy.AFTER_WRITE, time::get);
+        map.put("old", 1);
+        time.addAndGet(Duration.ofSeconds(8).toNanos());
+        map.put("new", 2);
+        time.addAndGet(Duration.ofSeconds(3).toNanos());
+
+        assertEquals(Map.of("new", 2), map.freeze());
+    }
+
+    @Test
+    @DisplayName("Test Concurrent Reads")
+    void testConcurrentReads() {
+        CustomHashMap<Integer, Integer> map = new CustomHashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            map.put(i, i * 2);
+        }
+        FrozenCustomHashMap<Integer, Integer> frozen = map.freeze();
+        long sum = IntStream.range(0, 100_000).parallel()
+                .mapToLong(frozen::get)
+                .sum();
+        assertEquals(100_000L * 99_999, sum);
+    }
+}
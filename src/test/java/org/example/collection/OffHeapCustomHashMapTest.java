@@ -0,0 +1,135 @@
+package org.example.collection;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapCustomHashMapTest {
+    private OffHeapCustomHashMap<String, String> map;
+
+    @BeforeEach
+    void setUp() {
+        map = new OffHeapCustomHashMap<>(ByteSerializer.STRING, ByteSerializer.STRING);
+    }
+
+    @AfterEach
+    void tearDown() {
+        map.close();
+    }
+
+    @Test
+    @DisplayName("Test put(), get(), remove()")
+    void testBasicOperations() {
+        assertNull(map.put("one", "1"));
+        assertNull(map.put("two", "2"));
+        assertEquals("1", map.put("one", "uno"));
+
+        assertEquals("uno", map.get("one"));
+        assertEquals("2", map.get("two"));
+        assertNull(map.get("three"));
+        assertTrue(map.containsKey("two"));
+        assertEquals(2, map.size());
+
+        assertEquals("2", map.remove("two"));
+        assertNull(map.remove("two"));
+        assertEquals(1, map.size());
+        assertEquals("{one=uno}", map.toString());
+    }
+
+    @Test
+    @DisplayName("Test growth of table and data area")
+    void testGrowth() {
+        for (int i = 0; i < 50_000; i++) {
+            map.put("key-" + i, "value-" + i);
+        }
+
+        assertEquals(50_000, map.size());
+        assertTrue(map.capacity() >= 65536);
+        for (int i = 0; i < 50_000; i++) {
+            assertEquals("value-" + i, map.get("key-" + i));
+        }
+        assertTrue(map.usedBytes() <= map.allocatedBytes());
+    }
+
+    @Test
+    @DisplayName("Test overwrites are compacted")
+    void testCompaction() {
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 500; i++) {
+                map.put("key-" + i, "value-" + round + "-" + i);
+            }
+        }
+
+        assertEquals(500, map.size());
+        assertEquals("value-199-42", map.get("key-42"));
+        assertTrue(map.allocatedBytes() < 1024 * 1024);
+    }
+
+    @Test
+    @DisplayName("Test Integer keys and clear")
+    void testIntegerKeysAndClear() {
+        try (OffHeapCustomHashMap<Integer, Long> numbers =
+                     new OffHeapCustomHashMap<>(ByteSerializer.INTEGER, ByteSerializer.LONG, 1000)) {
+            for (int i = 0; i < 1000; i++) {
+                numbers.put(i, i * 10L);
+            }
+            assertEquals(990L, numbers.get(99));
+
+            numbers.clear();
+            assertTrue(numbers.isEmpty());
+            assertNull(numbers.get(99));
+        }
+    }
+
+    @Test
+    @DisplayName("Test byte[] keys are matched by content")
+    void testByteArrayKeys() {
+        try (OffHeapCustomHashMap<byte[], String> bytes =
+                     new OffHeapCustomHashMap<>(ByteSerializer.BYTES, ByteSerializer.STRING)) {
+            assertNull(bytes.put(new byte[] {1, 2, 3}, "a"));
+            assertEquals("a", bytes.put(new byte[] {1, 2, 3}, "b"));
+            assertEquals(1, bytes.size());
+            assertEquals("b", bytes.get(new byte[] {1, 2, 3}));
+
+            for (int i = 0; i < 1000; i++) {
+                bytes.put(new byte[] {(byte) i, (byte) (i >>> 8), 7, 7, 7, 7, 7, 7, 7}, "v" + i);
+            }
+            assertEquals(1001, bytes.size());
+            assertEquals("v500", bytes.get(new byte[] {(byte) 500, (byte) (500 >>> 8), 7, 7, 7, 7, 7, 7, 7}));
+            assertEquals("b", bytes.remove(new byte[] {1, 2, 3}));
+            assertFalse(bytes.containsKey(new byte[] {1, 2, 3}));
+        }
+    }
+
+    @Test
+    @DisplayName("Test strings with unpaired surrogates")
+    void testUnpairedSurrogates() {
+        for (String s : new String[] {"\uD800", "a\uDC00b", "\uD83D\uDE00\uD83D", "\uDE00\uD83D\uDE00"}) {
+            assertEquals(s.getBytes(StandardCharsets.UTF_8).length, ByteSerializer.STRING.size(s));
+        }
+
+        assertNull(map.put("key", "\uD800\uD800\uD800"));
+        assertEquals("???", map.put("key", "abc"));
+        assertEquals("abc", map.put("key", "\uDC00x"));
+        assertEquals("?x", map.get("key"));
+        assertNull(map.put("\uD800", "lone"));
+        assertEquals("lone", map.get("\uD800"));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    @DisplayName("Test closed map rejects operations")
+    void testClose() {
+        map.put("key", "value");
+        map.close();
+
+        assertEquals(0, map.allocatedBytes());
+        assertThrows(IllegalStateException.class, () -> map.get("key"));
+        assertThrows(IllegalStateException.class, () -> map.put("key", "value"));
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.collection;
+
+import org.example.collection.CustomHashMapTest.CollidingKey;
+import org.example.collection.CustomHashMapTest.PlainKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentCustomHashMapTest {
+
+    @Test
+    @DisplayName("Test with(), without() Leave Older Versions Intact")
+    void testVersions() {
+        PersistentCustomHashMap<String, Integer> empty = PersistentCustomHashMap.empty();
+        PersistentCustomHashMap<String, Integer> one = empty.with("one", 1);
+        PersistentCustomHashMap<String, Integer> two = one.with("two", 2);
+        PersistentCustomHashMap<String, Integer> changed = two.with("one", 11);
+        PersistentCustomHashMap<String, Integer> removed = changed.without("two");
+
+        assertTrue(empty.isEmpty());
+        assertEquals(Map.of("one", 1), one);
+        assertEquals(Map.of("one", 1, "two", 2), two);
+        assertEquals(Map.of("one", 11, "two", 2), changed);
+        assertEquals(Map.of("one", 11), removed);
+
+        assertSame(two, two.with("two", two.get("two")));
+        assertSame(two, two.without("three"));
+        assertSame(PersistentCustomHashMap.empty(), one.without("one"));
+        assertEquals(-1, two.getOrDefault("three", -1));
+    }
+
+    @Test
+    @DisplayName("Test Random Operations Match HashMap In Every Version")
+    void testAgainstHashMap() {
+        PersistentCustomHashMap<Integer, Integer> map = PersistentCustomHashMap.empty();
+        Map<Integer, Integer> expected = new HashMap<>();
+        List<PersistentCustomHashMap<Integer, Integer>> versions = new ArrayList<>();
+        List<Map<Integer, Integer>> copies = new ArrayList<>();
+        Random random = new Random(17);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(10_000);
+            if (random.nextInt(3) == 0) {
+                map = map.without(key);
+                expected.remove(key);
+            } else {
+                map = map.with(key, i);
+                expected.put(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+            if (i % 5_000 == 0) {
+                versions.add(map);
+                copies.add(new HashMap<>(expected));
+            }
+        }
+        assertEquals(expected, map);
+        assertEquals(expected.hashCode(), map.hashCode());
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(copies.get(i), versions.get(i));
+        }
+
+        Map<Integer, Integer> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(expected, iterated);
+        assertEquals(map, PersistentCustomHashMap.copyOf(expected));
+    }
+
+    @Test
+    @DisplayName("Test Keys With Equal Hash Codes And Null Keys")
+    void testCollisionsAndNulls() {
+        PersistentCustomHashMap<Object, Integer> map = PersistentCustomHashMap.empty();
+        for (int i = 0; i < 100; i++) {
+            map = map.with(new CollidingKey(i), i).with(new PlainKey(i, i % 3), -i);
+        }
+        map = map.with(null, 0);
+        assertEquals(201, map.size());
+        assertEquals(0, map.get(null));
+        assertEquals(7, map.get(new CollidingKey(7)));
+        assertEquals(-8, map.get(new PlainKey(8, 2)));
+        assertFalse(map.containsKey(new PlainKey(8, 1)));
+
+        for (int i = 0; i < 100; i++) {
+            map = map.without(new CollidingKey(i));
+        }
+        map = map.without(null);
+        assertEquals(100, map.size());
+        assertFalse(map.containsKey(null));
+        for (int i = 0; i < 100; i++) {
+            map = map.without(new PlainKey(i, i % 3));
+        }
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    @DisplayName("Test Map Mutators Throw UnsupportedOperationException")
+    void testImmutable() {
+        PersistentCustomHashMap<String, Integer> map = PersistentCustomHashMap.<String, Integer>empty().with("a", 1);
+        assertThrows(UnsupportedOperationException.class, () -> map.put("b", 2));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove("a"));
+        assertThrows(UnsupportedOperationException.class, () -> map.merge("a", 1, Integer::sum));
+        assertThrows(UnsupportedOperationException.class, map::clear);
+        assertThrows(UnsupportedOperationException.class, () -> map.entrySet().iterator().next().setValue(3));
+        assertEquals(Map.of("a", 1), map);
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.collection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveMapsTest {
+
+    @Test
+    @DisplayName("Test IntIntMap put(), get(), remove()")
+    void testIntIntMapBasics() {
+        IntIntMap map = new IntIntMap(4, -1);
+
+        assertEquals(-1, map.put(1, 10));
+        assertEquals(-1, map.put(0, 20));
+        assertEquals(10, map.put(1, 11));
+
+        assertEquals(11, map.get(1));
+        assertEquals(20, map.get(0));
+        assertEquals(-1, map.get(2));
+        assertEquals(7, map.getOrDefault(2, 7));
+        assertTrue(map.containsKey(0));
+        assertEquals(2, map.size());
+
+        assertEquals(20, map.remove(0));
+        assertEquals(-1, map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    @DisplayName("Test IntObjMap with null values")
+    void testIntObjMapNullValues() {
+        IntObjMap<String> map = new IntObjMap<>();
+
+        map.put(5, null);
+        map.put(6, "six");
+
+        assertNull(map.get(5));
+        assertTrue(map.containsKey(5));
+        assertEquals("six", map.get(6));
+        assertEquals("none", map.getOrDefault(7, "none"));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    @DisplayName("Test IntObjMap against HashMap")
+    void testIntObjMapRandomized() {
+        IntObjMap<Integer> map = new IntObjMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 4900; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    @DisplayName("Test LongLongMap against HashMap")
+    void testLongLongMapRandomized() {
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(11);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = (random.nextInt(5000) - 100) * 0x1_0000_0000L;
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertEquals(removed == null ? 0L : removed, map.remove(key));
+            } else {
+                Long previous = expected.put(key, (long) i);
+                assertEquals(previous == null ? 0L : previous, map.put(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    @DisplayName("Test LongObjMap grows and clears")
+    void testLongObjMapGrowAndClear() {
+        LongObjMap<String> map = new LongObjMap<>(10);
+
+        for (long i = 0; i < 10_000; i++) {
+            map.put(i * 31, "v" + i);
+        }
+        assertEquals(10_000, map.size());
+        assertEquals("v9999", map.get(9999L * 31));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(31));
+        assertEquals("{}", map.toString());
+    }
+}
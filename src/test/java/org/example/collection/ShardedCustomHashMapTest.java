@@ -0,0 +1,126 @@
+package org.example.collection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedCustomHashMapTest {
+
+    @Test
+    @DisplayName("Test putAsync(), getAsync(), removeAsync()")
+    void testAsyncOperations() throws Exception {
+        try (ShardedCustomHashMap<String, Integer> map = new ShardedCustomHashMap<>(3)) {
+            assertEquals(4, map.shardCount());
+            assertNull(map.putAsync("a", 1).get(5, TimeUnit.SECONDS));
+            assertEquals(1, map.putAsync("a", 2).get(5, TimeUnit.SECONDS));
+            assertEquals(2, map.getAsync("a").get(5, TimeUnit.SECONDS));
+            assertEquals(5, map.mergeAsync("a", 3, Integer::sum).get(5, TimeUnit.SECONDS));
+            assertEquals(10, map.computeAsync("b", (k, v) -> v == null ? 10 : v + 1).get(5, TimeUnit.SECONDS));
+            assertTrue(map.submit("b", shard -> shard.containsKey("b")).get(5, TimeUnit.SECONDS));
+            assertEquals(5, map.removeAsync("a").get(5, TimeUnit.SECONDS));
+            assertNull(map.getAsync("a").get(5, TimeUnit.SECONDS));
+
+            CompletableFuture<Integer> failed = map.submit("c", shard -> {
+                throw new IllegalStateException("boom");
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            // the shard keeps running after a failed operation
+            assertEquals(10, map.getAsync("b").get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Test Concurrent Writers And Parallel forEachAsync()")
+    void testConcurrentWriters() throws Exception {
+        try (ShardedCustomHashMap<Integer, Integer> map = new ShardedCustomHashMap<>(4)) {
+            int keys = 10_000;
+            List<Thread> writers = new ArrayList<>();
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                List<CompletableFuture<?>> own = new ArrayList<>();
+                Thread writer = new Thread(() -> {
+                    for (int i = 0; i < keys; i++) {
+                        own.add(map.mergeAsync(i, 1, Integer::sum));
+                    }
+                    synchronized (futures) {
+                        futures.addAll(own);
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+            Map<Integer, Integer> seen = new ConcurrentHashMap<>();
+            map.forEachAsync(seen::put).get(30, TimeUnit.SECONDS);
+            assertEquals(keys, seen.size());
+            assertTrue(seen.values().stream().allMatch(count -> count == 4));
+            assertEquals(keys, map.size());
+
+            Map<Integer, Integer> more = new HashMap<>();
+            for (int i = keys; i < 2 * keys; i++) {
+                more.put(i, i);
+            }
+            map.putAllAsync(more).get(30, TimeUnit.SECONDS);
+            assertEquals(2 * keys, map.size());
+            assertEquals(keys + 5, map.getAsync(keys + 5).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Test close() Runs Queued Operations And Rejects Later Ones")
+    void testClose() throws Exception {
+        ShardedCustomHashMap<Integer, Integer> map = new ShardedCustomHashMap<>(2);
+        List<CompletableFuture<Integer>> queued = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            queued.add(map.putAsync(i, i));
+        }
+        map.close();
+        for (CompletableFuture<Integer> future : queued) {
+            assertTrue(future.isDone());
+            assertFalse(future.isCompletedExceptionally());
+        }
+        assertEquals(1_000, map.size());
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> map.getAsync(1).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertThrows(IllegalArgumentException.class, () -> new ShardedCustomHashMap<>(0));
+    }
+
+    @Test
+    @DisplayName("Test Failing Thread Factory Stops The Shards Already Started")
+    void testFailingThreadFactory() throws Exception {
+        List<Thread> started = new ArrayList<>();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new ShardedCustomHashMap<Integer, Integer>(4, task -> {
+                    if (started.size() == 2) {
+                        throw new IllegalStateException("no more threads");
+                    }
+                    Thread thread = new Thread(task);
+                    started.add(thread);
+                    return thread;
+                }));
+        assertEquals("no more threads", e.getMessage());
+        assertEquals(2, started.size());
+        for (Thread thread : started) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(thread.isAlive());
+        }
+    }
+}